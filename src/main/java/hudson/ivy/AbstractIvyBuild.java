@@ -28,17 +28,17 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Cause.UpstreamCause;
-import hudson.model.DependencyGraph;
 import hudson.model.ParametersAction;
+import hudson.model.Queue;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.tasks.BuildTrigger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
-import jenkins.model.Jenkins;
 
 public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B extends AbstractIvyBuild<P, B>>
         extends AbstractBuild<P, B> {
@@ -75,7 +75,10 @@ public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B ext
         }
 
         // trigger dependency builds
-        for (AbstractProject<?, ?> down : getParent().getDownstreamProjects()) {
+        List<AbstractProject<?, ?>> triggered = new ArrayList<>();
+        List<AbstractProject> downstreamProjects = getParent().getDownstreamProjects();
+        IvyDownstreamPlan plan = new IvyDownstreamPlan(IvyModuleGraph.get(), getParent(), downstreamProjects);
+        for (AbstractProject<?, ?> down : downstreamProjects) {
             if (debug) {
                 listener.getLogger().println("Considering whether to trigger " + down + " or not");
             }
@@ -84,14 +87,19 @@ public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B ext
             // only trigger them when all the upstream dependencies are updated.
             boolean trigger = true;
 
-            if (down.isInQueue()) {
+            if (down instanceof IvyModule && IvyModuleWaves.isScheduled((IvyModule) down)) {
+                if (debug) {
+                    listener.getLogger().println(" -> No, because downstream is scheduled by its module set build");
+                }
+                trigger = false;
+            } else if (down.isInQueue()) {
                 if (debug) {
                     listener.getLogger().println(" -> No, because downstream is already in queue");
                 }
                 trigger = false;
             }
             // Check to see if any of its upstream dependencies are already building or in queue.
-            else if (areUpstreamsBuilding(down, getParent())) {
+            else if (plan.hasUpstreamBuilding(down)) {
                 if (debug) {
                     listener.getLogger()
                             .println(" -> No, because downstream has dependencies already building or in queue");
@@ -99,7 +107,7 @@ public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B ext
                 trigger = false;
             }
             // Check to see if any of its upstream dependencies are in this list of downstream projects.
-            else if (inDownstreamProjects(down)) {
+            else if (plan.hasUpstreamInDownstreamProjects(down)) {
                 if (debug) {
                     listener.getLogger()
                             .println(" -> No, because downstream has dependencies in the downstream projects list");
@@ -149,9 +157,39 @@ public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B ext
 
             if (trigger) {
                 listener.getLogger().println(Messages.IvyBuild_Triggering(down.getName()));
-                down.scheduleBuild(new ParameterizedUpstreamCause(this, this.getActions(ParametersAction.class)));
+                triggered.add(down);
             }
         }
+        scheduleBuilds(triggered);
+    }
+
+    /**
+     * Schedules a build of each of the given projects, caused by this build and with its
+     * parameters.
+     * <p>
+     * All the builds are scheduled while holding the queue lock, so that the queue does
+     * not go through a maintenance pass for each one but once they are all in.
+     */
+    protected final void scheduleBuilds(Collection<? extends AbstractProject<?, ?>> projects) {
+        scheduleBuilds(projects, -1);
+    }
+
+    /**
+     * Like {@link #scheduleBuilds(Collection)}, with the given quiet period, or with the
+     * quiet period of each project if negative.
+     */
+    final void scheduleBuilds(Collection<? extends AbstractProject<?, ?>> projects, int quietPeriod) {
+        if (projects.isEmpty()) {
+            return;
+        }
+        List<ParametersAction> parameters = getActions(ParametersAction.class);
+        Queue.withLock(() -> {
+            for (AbstractProject<?, ?> p : projects) {
+                p.scheduleBuild(
+                        quietPeriod < 0 ? p.getQuietPeriod() : quietPeriod,
+                        new ParameterizedUpstreamCause(this, parameters));
+            }
+        });
     }
 
     public static class ParameterizedUpstreamCause extends UpstreamCause {
@@ -166,46 +204,4 @@ public abstract class AbstractIvyBuild<P extends AbstractIvyProject<P, B>, B ext
             return upStreamParameters;
         }
     }
-
-    private boolean inDownstreamProjects(AbstractProject downstreamProject) {
-        DependencyGraph graph = Jenkins.get().getDependencyGraph();
-        Set<AbstractProject> tups = graph.getTransitiveUpstream(downstreamProject);
-
-        for (AbstractProject tup : tups) {
-            for (AbstractProject<?, ?> dp : getParent().getDownstreamProjects()) {
-                if (dp != getParent() && dp != downstreamProject && dp == tup) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Determines whether any of the upstream project are either
-     * building or in the queue.
-     * <p>
-     * This means eventually there will be an automatic triggering of
-     * the given project (provided that all builds went smoothly.)
-     *
-     * @param downstreamProject
-     *      The AbstractProject we want to build.
-     * @param excludeProject
-     *      An AbstractProject to exclude - if we see this in the transitive
-     *      dependencies, we're not going to bother checking to see if it's
-     *      building. For example, pass the current parent project to be sure
-     *      that it will be ignored when looking for building dependencies.
-     * @return
-     *      True if any upstream projects are building or in queue, false otherwise.
-     */
-    private boolean areUpstreamsBuilding(AbstractProject downstreamProject, AbstractProject excludeProject) {
-        DependencyGraph graph = Jenkins.get().getDependencyGraph();
-        Set<AbstractProject> tups = graph.getTransitiveUpstream(downstreamProject);
-        for (AbstractProject tup : tups) {
-            if (tup != excludeProject && (tup.isBuilding() || tup.isInQueue())) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
@@ -0,0 +1,119 @@
+package hudson.ivy;
+
+import hudson.Util;
+import hudson.model.Api;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records the critical path planned by {@link IvyModuleWaves} for an
+ * {@link IvyModuleSetBuild}: the chain of modules expected to take the longest, with
+ * the duration expected for each of them when the build started.
+ */
+@ExportedBean
+public final class IvyCriticalPathAction implements RunAction2 {
+    private final List<Step> modules;
+    private transient Run<?, ?> run;
+
+    IvyCriticalPathAction(List<IvyModule> path, Map<IvyModule, Long> durations) {
+        List<Step> modules = new ArrayList<>(path.size());
+        for (IvyModule module : path) {
+            modules.add(new Step(module.getModuleName().toString(), durations.get(module)));
+        }
+        this.modules = modules;
+    }
+
+    /**
+     * The modules of the critical path, upstream modules first.
+     */
+    @Exported(inline = true)
+    public List<Step> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * Sum of the expected durations of the modules, in milliseconds.
+     */
+    @Exported
+    public long getTotalDuration() {
+        long total = 0;
+        for (Step step : modules) {
+            total += step.duration;
+        }
+        return total;
+    }
+
+    public String getTotalDurationString() {
+        return Util.getTimeSpanString(getTotalDuration());
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.IvyCriticalPathAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "criticalPath";
+    }
+
+    /**
+     * A module of the critical path and its expected duration.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Step {
+        private final String module;
+        private final long duration;
+
+        Step(String module, long duration) {
+            this.module = module;
+            this.duration = duration;
+        }
+
+        @Exported
+        public String getModule() {
+            return module;
+        }
+
+        /**
+         * In milliseconds.
+         */
+        @Exported
+        public long getDuration() {
+            return duration;
+        }
+
+        public String getDurationString() {
+            return Util.getTimeSpanString(duration);
+        }
+    }
+}
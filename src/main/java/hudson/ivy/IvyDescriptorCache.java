@@ -0,0 +1,351 @@
+package hudson.ivy;
+
+import hudson.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor;
+import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+
+/**
+ * Ivy descriptors parsed in earlier builds, kept on the build node next to the
+ * workspace so that only new and modified descriptors need to be parsed again.
+ * <p>
+ * Entries are keyed by the path of the descriptor relative to the module root,
+ * and remember the size, timestamp and digest of the file together with the
+ * coordinates and dependencies it declared, which is all that {@link IvyModuleInfo}
+ * and the module sort need. A descriptor whose size and timestamp are unchanged is
+ * reused as is; one whose timestamp moved is reused if its content is unchanged.
+ * <p>
+ * The cache as a whole is only valid for the Ivy settings it was built with, see
+ * {@link #fingerprint(File, List, String)} and {@link #fingerprint(String, List)}.
+ * Descriptors that extend other descriptors are never cached since their parent may
+ * change independently.
+ */
+final class IvyDescriptorCache {
+    /**
+     * Name of the cache file in the temporary directory of the workspace.
+     */
+    static final String FILE_NAME = "ivy-descriptors.cache";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Files modified this close to the time they were cached are always compared
+     * by content, since a later edit could keep both size and timestamp.
+     */
+    private static final long RACY_WINDOW = 2000;
+
+    private final String settingsFingerprint;
+    private final Map<String, Entry> entries;
+    private boolean modified;
+
+    private IvyDescriptorCache(String settingsFingerprint, Map<String, Entry> entries) {
+        this.settingsFingerprint = settingsFingerprint;
+        this.entries = entries;
+    }
+
+    /**
+     * Loads the cache from the given file. An empty cache is returned if the file
+     * does not exist, cannot be read or was built with different settings.
+     */
+    static IvyDescriptorCache load(File file, String settingsFingerprint) {
+        if (file.isFile()) {
+            try (DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if (in.readInt() == FORMAT_VERSION && in.readUTF().equals(settingsFingerprint)) {
+                    int size = checkLength(in.readInt(), Integer.MAX_VALUE / 2);
+                    Map<String, Entry> entries = new HashMap<>(size * 2);
+                    for (int i = 0; i < size; i++) {
+                        entries.put(in.readUTF(), Entry.read(in));
+                    }
+                    return new IvyDescriptorCache(settingsFingerprint, entries);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Discarding unreadable Ivy descriptor cache " + file, e);
+            }
+        }
+        IvyDescriptorCache cache = new IvyDescriptorCache(settingsFingerprint, new HashMap<>());
+        cache.modified = true;
+        return cache;
+    }
+
+    /**
+     * Returns the cached descriptor for the given file, or null if the file is not
+     * cached or has changed since.
+     * <p>
+     * The returned descriptor only carries the module revision id and the
+     * dependencies of the original one.
+     */
+    ModuleDescriptor get(String relativePath, File file) {
+        Entry e = entries.get(relativePath);
+        if (e == null || e.size != file.length()) {
+            return null;
+        }
+        long lastModified = file.lastModified();
+        if (e.lastModified != lastModified) {
+            try {
+                if (!Arrays.equals(e.digest, digest(file))) {
+                    return null;
+                }
+            } catch (IOException x) {
+                return null;
+            }
+            e.lastModified = racyClean(lastModified);
+            modified = true;
+        }
+        return e.toModuleDescriptor();
+    }
+
+    /**
+     * Records the descriptor parsed from the given file.
+     */
+    void put(String relativePath, File file, ModuleDescriptor module) {
+        modified = true;
+        if (module.getInheritedDescriptors().length > 0) {
+            entries.remove(relativePath);
+            return;
+        }
+        try {
+            entries.put(relativePath, new Entry(file.length(), racyClean(file.lastModified()), digest(file), module));
+        } catch (IOException e) {
+            entries.remove(relativePath);
+        }
+    }
+
+    /**
+     * Drops the entries of descriptors that are gone from the workspace.
+     */
+    void retainAll(Collection<String> relativePaths) {
+        if (entries.keySet().retainAll(relativePaths)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the cache back to the given file if it has been modified.
+     */
+    void save(File file) throws IOException {
+        if (!modified) {
+            return;
+        }
+        Path target = file.toPath();
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(settingsFingerprint);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    e.getValue().write(out);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        modified = false;
+    }
+
+    /**
+     * Computes a digest of everything that affects how descriptors are parsed: the
+     * content of the settings file and of the property files, the directory of the
+     * settings file (exposed to the settings as {@code ivy.settings.dir}) and the
+     * default branch.
+     * <p>
+     * Files included from within the settings file are only known once the settings
+     * are loaded, they are added by {@link #fingerprint(String, List)}.
+     */
+    static String fingerprint(File settingsFile, List<File> propertyFiles, String ivyBranch) throws IOException {
+        MessageDigest md = newDigest();
+        update(md, String.valueOf(FORMAT_VERSION));
+        if (settingsFile != null) {
+            update(md, settingsFile.getAbsoluteFile().getParent());
+            update(md, settingsFile);
+        } else {
+            update(md, "");
+        }
+        for (File propertyFile : propertyFiles) {
+            update(md, propertyFile.getAbsolutePath());
+            update(md, propertyFile);
+        }
+        update(md, ivyBranch == null ? "" : ivyBranch);
+        return Util.toHexString(md.digest());
+    }
+
+    /**
+     * Extends a fingerprint computed by {@link #fingerprint(File, List, String)} with
+     * the given files, included from within the settings file, see
+     * {@link IvySettingsIncludes}. A missing file counts as empty.
+     */
+    static String fingerprint(String settingsFingerprint, List<File> includedFiles) throws IOException {
+        if (includedFiles.isEmpty()) {
+            return settingsFingerprint;
+        }
+        MessageDigest md = newDigest();
+        update(md, settingsFingerprint);
+        for (File file : includedFiles) {
+            update(md, file.getAbsolutePath());
+            if (file.isFile()) {
+                update(md, file);
+            } else {
+                update(md, "");
+            }
+        }
+        return Util.toHexString(md.digest());
+    }
+
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    private static void update(MessageDigest md, File file) throws IOException {
+        md.update(Files.readAllBytes(file.toPath()));
+        md.update((byte) 0);
+    }
+
+    private static byte[] digest(File file) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                md.update(buf, 0, len);
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static long racyClean(long lastModified) {
+        return System.currentTimeMillis() - lastModified < RACY_WINDOW ? 0 : lastModified;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private long lastModified;
+        private final byte[] digest;
+
+        /**
+         * organisation, name, branch and revision of the module followed by those
+         * of each of its dependencies.
+         */
+        private final String[] coordinates;
+
+        private Entry(long size, long lastModified, byte[] digest, String[] coordinates) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.coordinates = coordinates;
+        }
+
+        Entry(long size, long lastModified, byte[] digest, ModuleDescriptor module) {
+            this(size, lastModified, digest, coordinatesOf(module));
+        }
+
+        private static String[] coordinatesOf(ModuleDescriptor module) {
+            DependencyDescriptor[] deps = module.getDependencies();
+            String[] coordinates = new String[4 * (deps.length + 1)];
+            setCoordinates(coordinates, 0, module.getModuleRevisionId());
+            for (int i = 0; i < deps.length; i++) {
+                setCoordinates(coordinates, i + 1, deps[i].getDependencyRevisionId());
+            }
+            return coordinates;
+        }
+
+        private static void setCoordinates(String[] coordinates, int index, ModuleRevisionId mrid) {
+            coordinates[4 * index] = mrid.getOrganisation();
+            coordinates[4 * index + 1] = mrid.getName();
+            coordinates[4 * index + 2] = mrid.getBranch();
+            coordinates[4 * index + 3] = mrid.getRevision();
+        }
+
+        private ModuleRevisionId revisionId(int index) {
+            return ModuleRevisionId.newInstance(
+                    coordinates[4 * index],
+                    coordinates[4 * index + 1],
+                    coordinates[4 * index + 2],
+                    coordinates[4 * index + 3]);
+        }
+
+        ModuleDescriptor toModuleDescriptor() {
+            DefaultModuleDescriptor module = new DefaultModuleDescriptor(revisionId(0), "integration", null);
+            for (int i = 1; i < coordinates.length / 4; i++) {
+                module.addDependency(new DefaultDependencyDescriptor(module, revisionId(i), false, false, true));
+            }
+            return module;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeInt(digest.length);
+            out.write(digest);
+            out.writeInt(coordinates.length);
+            for (String s : coordinates) {
+                out.writeBoolean(s != null);
+                if (s != null) {
+                    out.writeUTF(s);
+                }
+            }
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] digest = new byte[checkLength(in.readInt(), 64)];
+            in.readFully(digest);
+            String[] coordinates = new String[checkLength(in.readInt(), Short.MAX_VALUE)];
+            if (coordinates.length == 0 || coordinates.length % 4 != 0) {
+                throw new IOException("Corrupted Ivy descriptor cache");
+            }
+            for (int i = 0; i < coordinates.length; i++) {
+                coordinates[i] = in.readBoolean() ? in.readUTF() : null;
+                if (coordinates[i] == null && i % 4 == 1) {
+                    throw new IOException("Corrupted Ivy descriptor cache"); // every module has a name
+                }
+            }
+            return new Entry(size, lastModified, digest, coordinates);
+        }
+
+    }
+
+    private static int checkLength(int length, int max) throws IOException {
+        if (length < 0 || length > max) {
+            throw new IOException("Corrupted Ivy descriptor cache");
+        }
+        return length;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(IvyDescriptorCache.class.getName());
+}
@@ -0,0 +1,192 @@
+package hudson.ivy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.settings.IvySettings;
+
+/**
+ * Reads only what module discovery needs from an ivy.xml file: the module
+ * revision id from {@code <info>} and the revision ids of the
+ * {@code <dependency>} elements, without validation and without building
+ * configurations, artifacts or conflict managers.
+ * <p>
+ * Descriptors using features that cannot be handled this way, such as
+ * {@code <extends>}, configuration includes, a DTD, variables the settings cannot
+ * resolve or any attribute of {@code <info>} or {@code <dependency>} other than
+ * the ones listed in {@link #INFO_ATTRIBUTES} and {@link #DEPENDENCY_ATTRIBUTES},
+ * such as extra attributes, are left to Ivy's own parser.
+ */
+final class IvyDescriptorReader {
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    /**
+     * Attributes of {@code <info>} that either are read here or do not change the
+     * module revision id. {@code namespace} is not one of them, as Ivy translates the
+     * ids through the namespace.
+     */
+    private static final Set<String> INFO_ATTRIBUTES =
+            Set.of("organisation", "module", "branch", "revision", "status", "publication", "default");
+
+    /**
+     * Attributes of {@code <dependency>} that either are read here or do not change
+     * the dependency revision id.
+     */
+    private static final Set<String> DEPENDENCY_ATTRIBUTES = Set.of(
+            "org", "name", "branch", "rev", "revConstraint", "branchConstraint", "force", "transitive", "changing",
+            "conf");
+
+    private IvyDescriptorReader() {}
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * Reads the given descriptor. Must be called within the context of the
+     * {@link Ivy} instance the settings belong to, so that default branches are
+     * resolved the same way as by Ivy's parser.
+     *
+     * @return the descriptor, carrying only the module revision id and the
+     *      dependencies, or null if the file must be parsed by Ivy.
+     */
+    static ModuleDescriptor read(IvySettings settings, File file) throws IOException, XMLStreamException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            XMLStreamReader xml;
+            synchronized (FACTORY) {
+                xml = FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                return read(settings, xml);
+            } finally {
+                xml.close();
+            }
+        }
+    }
+
+    private static ModuleDescriptor read(IvySettings settings, XMLStreamReader xml) throws XMLStreamException {
+        DefaultModuleDescriptor module = null;
+        String parent = null;
+        int depth = 0;
+        while (xml.hasNext()) {
+            switch (xml.next()) {
+                case XMLStreamConstants.DTD:
+                    return null;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    String element = xml.getLocalName();
+                    if (depth == 1) {
+                        if (!element.equals("ivy-module")) {
+                            return null;
+                        }
+                    } else if (depth == 2) {
+                        parent = element;
+                        if (element.equals("info")) {
+                            module = readInfo(settings, xml);
+                            if (module == null) {
+                                return null;
+                            }
+                        }
+                    } else if (depth == 3) {
+                        if (parent.equals("info") && element.equals("extends")
+                                || parent.equals("configurations") && element.equals("include")) {
+                            return null;
+                        }
+                        if (parent.equals("dependencies") && element.equals("dependency")) {
+                            if (module == null || !readDependency(settings, xml, module)) {
+                                return null;
+                            }
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return module;
+    }
+
+    private static DefaultModuleDescriptor readInfo(IvySettings settings, XMLStreamReader xml) {
+        if (hasUnknownAttributes(xml, INFO_ATTRIBUTES)) {
+            return null;
+        }
+        String organisation = attribute(settings, xml, "organisation");
+        String name = attribute(settings, xml, "module");
+        String branch = attribute(settings, xml, "branch");
+        String revision = attribute(settings, xml, "revision");
+        if (organisation == null || name == null || unresolved(organisation, name, branch, revision)) {
+            return null;
+        }
+        if (revision == null) {
+            revision = Ivy.getWorkingRevision();
+        }
+        return new DefaultModuleDescriptor(
+                ModuleRevisionId.newInstance(organisation, name, branch, revision), "integration", null);
+    }
+
+    private static boolean readDependency(IvySettings settings, XMLStreamReader xml, DefaultModuleDescriptor module) {
+        if (hasUnknownAttributes(xml, DEPENDENCY_ATTRIBUTES)) {
+            return false;
+        }
+        String organisation = attribute(settings, xml, "org");
+        String name = attribute(settings, xml, "name");
+        String branch = attribute(settings, xml, "branch");
+        String revision = attribute(settings, xml, "rev");
+        if (name == null || unresolved(organisation, name, branch, revision)) {
+            return false;
+        }
+        if (organisation == null) {
+            organisation = module.getModuleRevisionId().getOrganisation();
+        }
+        module.addDependency(new DefaultDependencyDescriptor(
+                module, ModuleRevisionId.newInstance(organisation, name, branch, revision), false, false, true));
+        return true;
+    }
+
+    private static String attribute(IvySettings settings, XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        return value == null ? null : settings.substitute(value);
+    }
+
+    /**
+     * Ivy turns the attributes it does not know into extra attributes of the
+     * revision ids, whether they have a namespace or not, so any attribute not known
+     * to be harmless needs Ivy's parser.
+     */
+    private static boolean hasUnknownAttributes(XMLStreamReader xml, Set<String> known) {
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            String namespace = xml.getAttributeNamespace(i);
+            if (namespace != null && !namespace.isEmpty() || !known.contains(xml.getAttributeLocalName(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean unresolved(String... values) {
+        for (String value : values) {
+            if (value != null && value.contains("${")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,208 @@
+package hudson.ivy;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Finds the Ivy descriptors in a directory tree, with the same include/exclude
+ * semantics as {@link hudson.Util#createFileSet(File, String, String)} and Ant's
+ * {@link DirectoryScanner}, including the default excludes.
+ * <p>
+ * Unlike {@link DirectoryScanner}, directories are skipped as soon as no include
+ * pattern can match anything below them, or an exclude pattern such as
+ * {@code **}{@code /node_modules/**} excludes everything below them, so large
+ * excluded trees are never walked. Symbolic links are followed, but a directory
+ * reached again through a link cycle is not walked a second time.
+ */
+final class IvyDescriptorScanner {
+    private final TokenizedPattern[] includes;
+    private final TokenizedPattern[] excludes;
+
+    /**
+     * @param includes
+     *      Comma-separated Ant patterns of the files to find.
+     * @param excludes
+     *      Comma-separated Ant patterns of the files to exclude, possibly null.
+     */
+    IvyDescriptorScanner(String includes, String excludes) {
+        this.includes = tokenize(includes, Collections.emptyList());
+        this.excludes = tokenize(excludes, Arrays.asList(DirectoryScanner.getDefaultExcludes()));
+    }
+
+    private static TokenizedPattern[] tokenize(String patterns, List<String> defaults) {
+        List<TokenizedPattern> r = new ArrayList<>();
+        if (patterns != null) {
+            StringTokenizer tokens = new StringTokenizer(patterns, ",");
+            while (tokens.hasMoreTokens()) {
+                String token = tokens.nextToken().trim();
+                if (!token.isEmpty()) {
+                    r.add(new TokenizedPattern(normalize(token)));
+                }
+            }
+        }
+        for (String pattern : defaults) {
+            r.add(new TokenizedPattern(normalize(pattern)));
+        }
+        return r.toArray(new TokenizedPattern[0]);
+    }
+
+    /**
+     * Same normalization as {@link DirectoryScanner}: platform separators, and a
+     * trailing separator stands for everything below the directory.
+     */
+    private static String normalize(String pattern) {
+        String p = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (p.endsWith(File.separator)) {
+            p += SelectorUtils.DEEP_TREE_MATCH;
+        }
+        return p;
+    }
+
+    /**
+     * Returns the paths of the matching files relative to {@code baseDir}, using the
+     * platform separator and sorted like {@link DirectoryScanner#getIncludedFiles()}.
+     *
+     * @param parallelism
+     *      If greater than 1, the top-level directories are walked by up to this many
+     *      threads.
+     */
+    String[] scan(File baseDir, int parallelism) throws IOException, InterruptedException {
+        if (!baseDir.isDirectory()) {
+            throw new FileNotFoundException(baseDir + " does not exist.");
+        }
+        Path base = baseDir.toPath();
+
+        List<String> found = new ArrayList<>();
+        List<Path> topLevelDirs = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(base)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (Files.isDirectory(child)) {
+                    if (shouldWalk(new TokenizedPath(name))) {
+                        topLevelDirs.add(child);
+                    }
+                } else if (Files.isRegularFile(child) && isSelected(new TokenizedPath(name))) {
+                    found.add(name);
+                }
+            }
+        }
+
+        if (parallelism < 2 || topLevelDirs.size() < 2) {
+            for (Path dir : topLevelDirs) {
+                found.addAll(walk(base, dir));
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, topLevelDirs.size()));
+            try {
+                List<ForkJoinTask<List<String>>> tasks = new ArrayList<>(topLevelDirs.size());
+                for (Path dir : topLevelDirs) {
+                    tasks.add(pool.submit(() -> walk(base, dir)));
+                }
+                for (ForkJoinTask<List<String>> task : tasks) {
+                    found.addAll(task.get());
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        String[] r = found.toArray(new String[0]);
+        Arrays.sort(r);
+        return r;
+    }
+
+    private List<String> walk(final Path base, Path dir) throws IOException {
+        final List<String> found = new ArrayList<>();
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                if (d.equals(dir)) {
+                    return FileVisitResult.CONTINUE; // already checked by scan()
+                }
+                return shouldWalk(new TokenizedPath(base.relativize(d).toString()))
+                        ? FileVisitResult.CONTINUE
+                        : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String path = base.relativize(file).toString();
+                    if (isSelected(new TokenizedPath(path))) {
+                        found.add(path);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof FileSystemLoopException) {
+                    return FileVisitResult.CONTINUE; // symlink cycle, already visited
+                }
+                throw e;
+            }
+        });
+        return found;
+    }
+
+    private boolean isSelected(TokenizedPath path) {
+        return matchesAny(includes, path) && !matchesAny(excludes, path);
+    }
+
+    /**
+     * Whether the given directory may contain a file that is included and not
+     * excluded.
+     */
+    private boolean shouldWalk(TokenizedPath dir) {
+        for (TokenizedPattern exclude : excludes) {
+            if (exclude.endsWith(SelectorUtils.DEEP_TREE_MATCH)
+                    && exclude.withoutLastToken().matchPath(dir, true)) {
+                return false;
+            }
+        }
+        for (TokenizedPattern include : includes) {
+            if (include.matchStartOf(dir, true)
+                    && (include.containsPattern(SelectorUtils.DEEP_TREE_MATCH) || include.depth() > dir.depth())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(TokenizedPattern[] patterns, TokenizedPath path) {
+        for (TokenizedPattern pattern : patterns) {
+            if (pattern.matchPath(path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
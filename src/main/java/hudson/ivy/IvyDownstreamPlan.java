@@ -0,0 +1,82 @@
+package hudson.ivy;
+
+import hudson.model.AbstractProject;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * What {@link AbstractIvyBuild#scheduleDownstreamBuilds} needs to know about the
+ * upstream projects of each downstream project of a finished build, computed for all
+ * of them at once.
+ * <p>
+ * Whether projects are building or in the queue is checked once per project, for the
+ * projects upstream of the downstream projects, rather than once per downstream
+ * project it is upstream of.
+ */
+final class IvyDownstreamPlan {
+    private final IvyModuleGraph graph;
+
+    /**
+     * The ids of the projects downstream of a project that is building or in the queue,
+     * other than the project of the finished build.
+     */
+    private final BitSet activeUpstream;
+
+    /**
+     * The ids of the projects downstream of another downstream project of the finished
+     * build.
+     */
+    private final BitSet downstreamUpstream;
+
+    IvyDownstreamPlan(
+            IvyModuleGraph graph,
+            AbstractProject<?, ?> project,
+            Collection<? extends AbstractProject> downstreamProjects) {
+        this.graph = graph;
+        int projectId = graph.getId(project);
+
+        BitSet downstream = new BitSet(graph.size());
+        for (AbstractProject<?, ?> down : downstreamProjects) {
+            int id = graph.getId(down);
+            if (id >= 0) {
+                downstream.set(id);
+            }
+        }
+
+        BitSet active = new BitSet(graph.size());
+        BitSet upstream = graph.getTransitiveUpstream(downstream);
+        for (int i = upstream.nextSetBit(0); i >= 0; i = upstream.nextSetBit(i + 1)) {
+            AbstractProject<?, ?> up = graph.getProject(i);
+            if (i != projectId && (up.isBuilding() || up.isInQueue())) {
+                active.set(i);
+            }
+        }
+        activeUpstream = graph.getTransitiveDownstream(active);
+
+        if (projectId >= 0) {
+            downstream.clear(projectId);
+        }
+        downstreamUpstream = graph.getDownstreamOfOthers(downstream);
+    }
+
+    /**
+     * Returns true if any project upstream of the given one, other than the project of
+     * the finished build, was building or in the queue when this plan was computed.
+     * <p>
+     * This means eventually there will be an automatic triggering of
+     * the given project (provided that all builds went smoothly.)
+     */
+    boolean hasUpstreamBuilding(AbstractProject<?, ?> down) {
+        int id = graph.getId(down);
+        return id >= 0 && activeUpstream.get(id);
+    }
+
+    /**
+     * Returns true if any other downstream project of the finished build is upstream of
+     * the given one.
+     */
+    boolean hasUpstreamInDownstreamProjects(AbstractProject<?, ?> down) {
+        int id = graph.getId(down);
+        return id >= 0 && downstreamUpstream.get(id);
+    }
+}
@@ -0,0 +1,117 @@
+package hudson.ivy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.util.SystemProperties;
+import org.apache.ivy.Ivy;
+
+/**
+ * Configured {@link Ivy} instances kept in the JVM of a build node, so that builds
+ * of a job using the same settings do not load them again.
+ * <p>
+ * Instances are keyed by the job and by a fingerprint of everything they were
+ * configured from (see {@link IvyDescriptorCache#fingerprint}), including the files
+ * the settings file includes, which are checked again each time an instance is
+ * reused. They are only used to parse descriptors, and not shared between jobs so
+ * that whatever state parsing leaves in an instance stays within the job. The cache
+ * holds at most {@link #MAX_SIZE} instances and evicts the least recently used one
+ * first. Setting the size to 0 disables the cache.
+ */
+final class IvyInstanceCache {
+    /**
+     * Maximum number of {@link Ivy} instances kept per JVM.
+     */
+    static final int MAX_SIZE = SystemProperties.getInteger(IvyInstanceCache.class.getName() + ".size", 8);
+
+    private static final Map<String, Entry> INSTANCES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private IvyInstanceCache() {}
+
+    /**
+     * A configured instance and the files included by its settings.
+     */
+    static final class Entry {
+        final Ivy ivy;
+
+        /**
+         * Fingerprint of the settings together with the files they include.
+         */
+        final String fingerprint;
+
+        private final String settingsFingerprint;
+        private final List<File> includedFiles;
+
+        /**
+         * @param settingsFile
+         *      the settings file the instance was configured from, or null for the
+         *      default settings.
+         */
+        Entry(Ivy ivy, String settingsFingerprint, File settingsFile) throws IOException {
+            this.ivy = ivy;
+            this.settingsFingerprint = settingsFingerprint;
+            this.includedFiles = settingsFile == null
+                    ? Collections.emptyList()
+                    : IvySettingsIncludes.find(settingsFile, ivy.getSettings());
+            this.fingerprint = IvyDescriptorCache.fingerprint(settingsFingerprint, includedFiles);
+        }
+
+        private boolean isUpToDate() throws IOException {
+            return IvyDescriptorCache.fingerprint(settingsFingerprint, includedFiles)
+                    .equals(fingerprint);
+        }
+    }
+
+    /**
+     * Returns the instance configured for the given job with the settings of the given
+     * fingerprint, or null if there is none or if a file included by the settings has
+     * changed since.
+     */
+    static Entry get(String job, String settingsFingerprint) throws IOException {
+        String key = key(job, settingsFingerprint);
+        Entry entry;
+        synchronized (INSTANCES) {
+            entry = INSTANCES.get(key);
+        }
+        if (entry != null && !entry.isUpToDate()) {
+            synchronized (INSTANCES) {
+                INSTANCES.remove(key, entry);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Remembers the given instance, unless another build of the job has already
+     * registered one for the same settings in the meantime.
+     *
+     * @return the instance to use for these settings.
+     */
+    static Entry put(String job, Entry entry) {
+        if (MAX_SIZE <= 0) {
+            return entry;
+        }
+        String key = key(job, entry.settingsFingerprint);
+        synchronized (INSTANCES) {
+            Entry existing = INSTANCES.get(key);
+            if (existing != null && existing.fingerprint.equals(entry.fingerprint)) {
+                return existing;
+            }
+            INSTANCES.put(key, entry);
+            return entry;
+        }
+    }
+
+    private static String key(String job, String settingsFingerprint) {
+        return job + '\0' + settingsFingerprint;
+    }
+}
@@ -23,13 +23,13 @@
  */
 package hudson.ivy;
 
+import hudson.BulkChange;
 import hudson.CopyOnWrite;
 import hudson.Functions;
 import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.DependencyGraph;
-import hudson.model.DependencyGraph.Dependency;
 import hudson.model.Descriptor;
 import hudson.model.Descriptor.FormException;
 import hudson.model.Item;
@@ -49,11 +49,12 @@ import hudson.util.DescribableList;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -99,6 +100,11 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
 
     private transient ModuleName moduleName;
 
+    /**
+     * Cached {@link #asDependency()}, reset when the name, revision or branch changes.
+     */
+    private transient volatile ModuleDependency dependency;
+
     /**
      * Relative path from the workspace to the ivy descriptor file for this
      * module.
@@ -138,9 +144,32 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
     @CopyOnWrite
     private volatile Set<ModuleDependency> dependencies;
 
+    /**
+     * True if the configuration changed since the module was loaded or last saved.
+     */
+    private transient volatile boolean dirty;
+
+    /**
+     * Exponentially weighted average of the durations of the last successful or
+     * unstable builds, in milliseconds, -1 if there is none, or {@link Long#MIN_VALUE}
+     * until it is computed from the build history on first use.
+     */
+    private transient long weightedDuration = Long.MIN_VALUE;
+
+    /**
+     * Weight of each new build duration in {@link #getWeightedDuration()}.
+     */
+    static final double DURATION_WEIGHT = 0.3;
+
+    /**
+     * Number of builds {@link #getWeightedDuration()} is first computed from.
+     */
+    private static final int DURATION_HISTORY = 10;
+
     /* package */ IvyModule(IvyModuleSet parent, IvyModuleInfo moduleInfo, int firstBuildNumber) throws IOException {
         super(parent, moduleInfo.name.toFileSystemName());
         reconfigure(moduleInfo);
+        dirty = true;
         updateNextBuildNumber(firstBuildNumber);
         copyParentBuildWrappers(parent);
     }
@@ -194,19 +223,64 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
      * <p>
      * This method is invoked on {@link IvyModule} that has the matching
      * {@link ModuleName}.
+     *
+     * @return true if the module changed and needs to be saved
      */
-    /* package */ final void reconfigure(IvyModuleInfo moduleInfo) {
+    /* package */ final boolean reconfigure(IvyModuleInfo moduleInfo) {
+        boolean changed = affectsDependencyGraph(moduleInfo)
+                || !Objects.equals(displayName, moduleInfo.displayName)
+                || !Objects.equals(relativePathToDescriptorFromWorkspace, moduleInfo.relativePathToDescriptor);
         this.displayName = moduleInfo.displayName;
         this.revision = moduleInfo.revision;
         this.ivyBranch = moduleInfo.branch;
         this.relativePathToDescriptorFromWorkspace = moduleInfo.relativePathToDescriptor;
         this.dependencies = moduleInfo.dependencies;
+        this.dependency = null;
         disabled = false;
+        IvyModuleIndex.update(this);
+        if (changed) {
+            dirty = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns true if reconfiguring the module with the given information would change
+     * its part of the {@link DependencyGraph}.
+     */
+    /* package */ boolean affectsDependencyGraph(IvyModuleInfo moduleInfo) {
+        return disabled
+                || !Objects.equals(revision, moduleInfo.revision)
+                || !Objects.equals(ivyBranch, moduleInfo.branch)
+                || !Objects.equals(dependencies, moduleInfo.dependencies);
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        super.save();
+        if (!BulkChange.contains(this)) {
+            dirty = false;
+        }
+    }
+
+    /**
+     * Saves the module if it was created or {@linkplain #reconfigure(IvyModuleInfo)
+     * reconfigured} with different information since it was loaded or last saved.
+     *
+     * @return true if the module was saved
+     */
+    /* package */ synchronized boolean saveIfChanged() throws IOException {
+        if (!dirty || BulkChange.contains(this)) {
+            return false;
+        }
+        save();
+        return true;
     }
 
     @Override
     protected void doSetName(String name) {
         moduleName = ModuleName.fromFileSystemName(name);
+        dependency = null;
         super.doSetName(moduleName.toString());
     }
 
@@ -220,6 +294,7 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
         if (dependencies == null) {
             dependencies = Collections.emptySet();
         }
+        IvyModuleIndex.update(this);
     }
 
     /**
@@ -317,10 +392,16 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
      * Gets organisation+name+revision as {@link ModuleDependency}.
      */
     public ModuleDependency asDependency() {
-        return new ModuleDependency(
-                moduleName,
-                Functions.defaulted(revision, ModuleDependency.UNKNOWN),
-                Functions.defaulted(ivyBranch, ModuleDependency.UNKNOWN));
+        ModuleDependency d = dependency;
+        if (d == null) {
+            d = new ModuleDependency(
+                            moduleName,
+                            Functions.defaulted(revision, ModuleDependency.UNKNOWN),
+                            Functions.defaulted(ivyBranch, ModuleDependency.UNKNOWN))
+                    .intern();
+            dependency = d;
+        }
+        return d;
     }
 
     @Override
@@ -400,34 +481,15 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
         }
 
         IvyDependencyComputationData data = graph.getComputationalData(IvyDependencyComputationData.class);
-
-        // Build a map of all Ivy modules in this Jenkins instance as dependencies.
-        if (!getParent().ignoreUpstreamChanges() && data == null) {
-            Map<ModuleDependency, IvyModule> modules = new HashMap<>();
-            for (IvyModule m : getAllIvyModules()) {
-                if (!m.isBuildable() || !m.getParent().isAllowedToTriggerDownstream()) {
-                    continue;
-                }
-                ModuleDependency moduleDependency = m.asDependency();
-                modules.put(moduleDependency, m);
-                modules.put(moduleDependency.withUnknownRevision(), m);
-            }
-            data = new IvyDependencyComputationData(modules);
+        if (data == null) {
+            data = new IvyDependencyComputationData();
             graph.putComputationalData(IvyDependencyComputationData.class, data);
         }
 
         // In case two modules with the same name are defined, modules in the same IvyModuleSet
         // take precedence.
-        Map<ModuleDependency, IvyModule> myParentsModules = new HashMap<>();
-
-        for (IvyModule m : getParent().getModules()) {
-            if (m.isDisabled()) {
-                continue;
-            }
-            ModuleDependency moduleDependency = m.asDependency();
-            myParentsModules.put(moduleDependency, m);
-            myParentsModules.put(moduleDependency.withUnknownRevision(), m);
-        }
+        Map<ModuleDependency, IvyModule> myParentsModules =
+                data.moduleSetModules.computeIfAbsent(getParent(), IvyModule::getEnabledModules);
 
         // if the build style is the aggregator build, define dependencies against project,
         // not module.
@@ -439,9 +501,9 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
                 src = myParentsModules.get(d.withUnknownRevision());
             }
             if (src == null && !getParent().ignoreUpstreamChanges()) {
-                src = data.allModules.get(d);
+                src = IvyModuleIndex.find(d);
                 if (src == null) {
-                    src = data.allModules.get(d.withUnknownRevision());
+                    src = IvyModuleIndex.find(d.withUnknownRevision());
                 }
             }
 
@@ -457,8 +519,8 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
                 // downstream one to make the
                 // "Block build when upstream project is building" option behave
                 // properly
-                if (!this.getParent().equals(src.getParent()) && !hasDependency(graph, src.getParent(), downstream)) {
-                    graph.addDependency(new IvyVirtualDependency(src.getParent(), downstream));
+                if (!this.getParent().equals(src.getParent()) && !data.hasDependency(src.getParent(), downstream)) {
+                    data.addDependency(graph, new IvyVirtualDependency(src.getParent(), downstream));
                 }
                 upstream = src;
             }
@@ -467,40 +529,60 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
             if (!getParent().equals(src.getParent()) && !getParent().isAggregatorStyleBuild()) {
                 revisedDownstream = getParent();
                 if (!src.getParent().isAggregatorStyleBuild()
-                        && !hasDependency(graph, src.getParent(), revisedDownstream)) {
-                    graph.addDependency(new IvyVirtualDependency(src.getParent(), revisedDownstream));
+                        && !data.hasDependency(src.getParent(), revisedDownstream)) {
+                    data.addDependency(graph, new IvyVirtualDependency(src.getParent(), revisedDownstream));
                 }
             }
 
             // Create the build dependency, ignoring self-referencing or already existing deps
-            if (upstream != revisedDownstream && !hasDependency(graph, upstream, revisedDownstream)) {
-                graph.addDependency(new IvyThresholdDependency(
+            if (upstream != revisedDownstream && !data.hasDependency(upstream, revisedDownstream)) {
+                data.addDependency(graph, new IvyThresholdDependency(
                         upstream, revisedDownstream, Result.SUCCESS, isUseUpstreamParameters()));
             }
         }
     }
 
     /**
-     * Returns all Ivy modules in this Jenkins instance.
+     * Maps the enabled modules of the given module set as dependencies.
      */
-    protected Collection<IvyModule> getAllIvyModules() {
-        return Jenkins.get().getAllItems(IvyModule.class);
-    }
-
-    private boolean hasDependency(DependencyGraph graph, AbstractProject upstream, AbstractProject downstream) {
-        for (Dependency dep : graph.getDownstreamDependencies(upstream)) {
-            if (dep instanceof IvyDependency && dep.getDownstreamProject().equals(downstream)) {
-                return true;
+    private static Map<ModuleDependency, IvyModule> getEnabledModules(IvyModuleSet moduleSet) {
+        Map<ModuleDependency, IvyModule> modules = new HashMap<>();
+        for (IvyModule m : moduleSet.getModules()) {
+            if (m.isDisabled()) {
+                continue;
             }
+            ModuleDependency moduleDependency = m.asDependency();
+            modules.put(moduleDependency, m);
+            modules.put(moduleDependency.withUnknownRevision(), m);
         }
-        return false;
+        return modules;
     }
 
+    /**
+     * Lookup maps shared by all the modules during one computation of the dependency graph.
+     */
     private static class IvyDependencyComputationData {
-        final Map<ModuleDependency, IvyModule> allModules;
+        /**
+         * The enabled modules of each module set, computed by its first module.
+         */
+        final Map<IvyModuleSet, Map<ModuleDependency, IvyModule>> moduleSetModules = new HashMap<>();
+
+        /**
+         * The downstream projects of each upstream project, for the {@link IvyDependency}s
+         * added by {@link #addDependency}. The dependencies added by {@link IvyBuildTrigger}
+         * are not needed here, as their upstream project is never a module or module set.
+         */
+        private final Map<AbstractProject<?, ?>, Set<AbstractProject<?, ?>>> edges = new HashMap<>();
+
+        boolean hasDependency(AbstractProject<?, ?> upstream, AbstractProject<?, ?> downstream) {
+            Set<AbstractProject<?, ?>> downstreams = edges.get(upstream);
+            return downstreams != null && downstreams.contains(downstream);
+        }
 
-        public IvyDependencyComputationData(Map<ModuleDependency, IvyModule> modules) {
-            this.allModules = modules;
+        void addDependency(DependencyGraph graph, IvyDependency dependency) {
+            graph.addDependency(dependency);
+            edges.computeIfAbsent(dependency.getUpstreamProject(), k -> new HashSet<>())
+                    .add(dependency.getDownstreamProject());
         }
     }
 
@@ -511,10 +593,10 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
             return cob;
         }
 
-        if (!getParent().isAggregatorStyleBuild()) {
-            DependencyGraph graph = Jenkins.get().getDependencyGraph();
-            for (AbstractProject tup : graph.getTransitiveUpstream(this)) {
-                if (getParent() == tup.getParent() && (tup.isBuilding() || tup.isInQueue())) {
+        // nothing upstream can be building unless another module of the set is active
+        if (!getParent().isAggregatorStyleBuild() && IvyModuleActivity.hasOtherActiveModules(getParent(), this)) {
+            for (IvyModule tup : IvyModuleGraph.get().getSameSetUpstream(this)) {
+                if (IvyModuleActivity.isActive(tup) && (tup.isBuilding() || tup.isInQueue())) {
                     return new BecauseOfUpstreamModuleBuildInProgress(tup);
                 }
             }
@@ -523,6 +605,42 @@ public final class IvyModule extends AbstractIvyProject<IvyModule, IvyBuild> imp
         return null;
     }
 
+    /**
+     * Returns the exponentially weighted average of the durations of the last successful
+     * or unstable builds of this module, in milliseconds, or -1 if there is none.
+     */
+    public synchronized long getWeightedDuration() {
+        if (weightedDuration == Long.MIN_VALUE) {
+            weightedDuration = -1;
+            List<IvyBuild> builds = new ArrayList<>(getBuilds().limit(DURATION_HISTORY));
+            for (int i = builds.size() - 1; i >= 0; i--) {
+                addDuration(builds.get(i));
+            }
+        }
+        return weightedDuration;
+    }
+
+    /**
+     * Adds the duration of the given completed build to {@link #getWeightedDuration()}.
+     */
+    synchronized void recordDuration(IvyBuild build) {
+        // otherwise it is computed from the builds, this one included, on first use
+        if (weightedDuration != Long.MIN_VALUE) {
+            addDuration(build);
+        }
+    }
+
+    private void addDuration(IvyBuild build) {
+        Result result = build.getResult();
+        if (build.isBuilding() || result == null || result.isWorseThan(Result.UNSTABLE)) {
+            return;
+        }
+        long duration = build.getDuration();
+        weightedDuration = weightedDuration < 0
+                ? duration
+                : Math.round(DURATION_WEIGHT * duration + (1 - DURATION_WEIGHT) * weightedDuration);
+    }
+
     /**
      * Because the upstream module build is in progress, and we are configured to wait for that.
      */
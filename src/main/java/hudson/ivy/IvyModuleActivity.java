@@ -0,0 +1,136 @@
+package hudson.ivy;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Queue;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the modules of each {@link IvyModuleSet} that are in the queue or
+ * building, so that blockage checks can skip module sets where nothing is going on.
+ * <p>
+ * A module is active from the time it enters the queue until it is cancelled or its
+ * build is initialized, and from then until the build is finalized. The queue item
+ * stays recorded after it leaves the queue for an executor, since the build exists,
+ * and {@link IvyModule#isBuilding()} is true, before it is initialized. This covers at
+ * least the time during which {@link IvyModule#isInQueue()} or
+ * {@link IvyModule#isBuilding()} is true, so callers must still check those for the
+ * modules reported active. An item whose build never starts leaves its module active,
+ * which only costs the callers that check.
+ * Queue items and builds are recorded by identity, so recording one twice is
+ * harmless, which allows the items already in the queue at startup to be added.
+ */
+final class IvyModuleActivity {
+    /**
+     * The queue item ids and builds of the active modules, by module set.
+     */
+    private static final Map<IvyModuleSet, Map<IvyModule, Set<Object>>> ACTIVE = new ConcurrentHashMap<>();
+
+    private IvyModuleActivity() {}
+
+    /**
+     * Returns the modules of the given module set that may be in the queue or building.
+     */
+    static Collection<IvyModule> getActiveModules(IvyModuleSet moduleSet) {
+        Map<IvyModule, Set<Object>> active = ACTIVE.get(moduleSet);
+        return active == null ? Collections.emptySet() : active.keySet();
+    }
+
+    /**
+     * Returns true if a module of the given module set other than the given one may be
+     * in the queue or building.
+     */
+    static boolean hasOtherActiveModules(IvyModuleSet moduleSet, IvyModule module) {
+        Map<IvyModule, Set<Object>> active = ACTIVE.get(moduleSet);
+        if (active == null) {
+            return false;
+        }
+        int count = active.size();
+        return count > 1 || (count == 1 && !active.containsKey(module));
+    }
+
+    /**
+     * Returns true if the given module may be in the queue or building.
+     */
+    static boolean isActive(IvyModule module) {
+        Map<IvyModule, Set<Object>> active = ACTIVE.get(module.getParent());
+        return active != null && active.containsKey(module);
+    }
+
+    private static void activate(IvyModule module, Object token) {
+        ACTIVE.computeIfAbsent(module.getParent(), k -> new ConcurrentHashMap<>())
+                .compute(module, (k, tokens) -> {
+                    if (tokens == null) {
+                        tokens = ConcurrentHashMap.newKeySet();
+                    }
+                    tokens.add(token);
+                    return tokens;
+                });
+    }
+
+    private static void deactivate(IvyModule module, Object token) {
+        Map<IvyModule, Set<Object>> active = ACTIVE.get(module.getParent());
+        if (active != null) {
+            active.computeIfPresent(module, (k, tokens) -> {
+                tokens.remove(token);
+                return tokens.isEmpty() ? null : tokens;
+            });
+        }
+    }
+
+    /**
+     * Records the modules already in the queue when Jenkins starts.
+     */
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void recordQueuedModules() {
+        for (Queue.Item item : Queue.getInstance().getItems()) {
+            if (item.task instanceof IvyModule) {
+                activate((IvyModule) item.task, item.getId());
+            }
+        }
+    }
+
+    @Extension
+    public static final class QueueActivity extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            if (wi.task instanceof IvyModule) {
+                activate((IvyModule) wi.task, wi.getId());
+            }
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            // an item that is not cancelled is left for its build to replace
+            if (li.task instanceof IvyModule && li.isCancelled()) {
+                deactivate((IvyModule) li.task, li.getId());
+            }
+        }
+    }
+
+    @Extension
+    public static final class BuildActivity extends RunListener<IvyBuild> {
+        @Override
+        public void onInitialize(IvyBuild build) {
+            activate(build.getParent(), build);
+            deactivate(build.getParent(), build.getQueueId());
+        }
+
+        @Override
+        public void onFinalized(IvyBuild build) {
+            deactivate(build.getParent(), build);
+        }
+
+        @Override
+        public void onDeleted(IvyBuild build) {
+            deactivate(build.getParent(), build);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package hudson.ivy;
+
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records how long each phase of the module discovery of an {@link IvyModuleSetBuild}
+ * took, both on the build node and on the controller.
+ * <p>
+ * When {@link IvyModuleSet#isStreamModuleDiscovery()} is set, the controller reconfigures
+ * the modules while the build node parses the descriptors, so the phases overlap and add
+ * up to more than the time module discovery took.
+ *
+ * @see IvyModuleDiscoveryHistory
+ */
+@ExportedBean
+public final class IvyModuleDiscoveryAction implements RunAction2 {
+    private final List<Phase> phases;
+    private final boolean parsed;
+    private final int moduleCount;
+    private transient Run<?, ?> run;
+
+    IvyModuleDiscoveryAction(Map<String, Long> phaseNanos, boolean parsed, int moduleCount) {
+        List<Phase> phases = new ArrayList<>(phaseNanos.size());
+        for (Map.Entry<String, Long> e : phaseNanos.entrySet()) {
+            phases.add(new Phase(e.getKey(), TimeUnit.NANOSECONDS.toMillis(e.getValue())));
+        }
+        this.phases = phases;
+        this.parsed = parsed;
+        this.moduleCount = moduleCount;
+    }
+
+    /**
+     * The phases in the order they ran.
+     */
+    @Exported(inline = true)
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Sum of the durations of all the phases, in milliseconds.
+     */
+    @Exported
+    public long getTotalDuration() {
+        long total = 0;
+        for (Phase phase : phases) {
+            total += phase.duration;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the duration of the given phase in milliseconds, or -1 if it did not run.
+     */
+    public long getDuration(String phase) {
+        for (Phase p : phases) {
+            if (p.name.equals(phase)) {
+                return p.duration;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * False if the modules of the previous build were kept without parsing the
+     * descriptors.
+     */
+    @Exported
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    @Exported
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    @Exported
+    public int getBuildNumber() {
+        return run == null ? 0 : run.getNumber();
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.IvyModuleDiscoveryAction_DisplayName();
+    }
+
+    /**
+     * The phases are only shown in the summary of the build, and exported with it.
+     */
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * A phase of module discovery and its duration.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Phase {
+        private final String name;
+        private final long duration;
+
+        Phase(String name, long duration) {
+            this.name = name;
+            this.duration = duration;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * In milliseconds.
+         */
+        @Exported
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    /**
+     * Measures consecutive phases.
+     */
+    static final class Stopwatch {
+        private final Map<String, Long> phases = new LinkedHashMap<>();
+        private long start = System.nanoTime();
+
+        /**
+         * Ends the phase started by the previous call, or by the creation of the
+         * stopwatch, and records its duration under the given name.
+         */
+        void lap(String phase) {
+            long now = System.nanoTime();
+            add(phase, now - start);
+            start = now;
+        }
+
+        /**
+         * Adds a duration measured separately to the given phase, without ending the
+         * current phase.
+         */
+        void add(String phase, long nanos) {
+            phases.merge(phase, nanos, Long::sum);
+        }
+
+        /**
+         * Adds all the phases recorded elsewhere, such as on the build node.
+         */
+        void addAll(Map<String, Long> phases) {
+            for (Map.Entry<String, Long> e : phases.entrySet()) {
+                add(e.getKey(), e.getValue());
+            }
+        }
+
+        /**
+         * Starts a new phase without recording the time elapsed since the last one.
+         */
+        void restart() {
+            start = System.nanoTime();
+        }
+
+        /**
+         * Durations in nanoseconds, by phase in the order they were first recorded.
+         */
+        Map<String, Long> getPhases() {
+            return phases;
+        }
+    }
+}
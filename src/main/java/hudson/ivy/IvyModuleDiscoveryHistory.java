@@ -0,0 +1,97 @@
+package hudson.ivy;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Api;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Shows the {@link IvyModuleDiscoveryAction}s of the recent builds of an
+ * {@link IvyModuleSet} side by side, so that slow phases and regressions stand out.
+ */
+@ExportedBean
+public final class IvyModuleDiscoveryHistory implements Action {
+    /**
+     * Number of recent builds shown.
+     */
+    static final int MAX_BUILDS = 50;
+
+    private final IvyModuleSet project;
+
+    IvyModuleDiscoveryHistory(IvyModuleSet project) {
+        this.project = project;
+    }
+
+    public IvyModuleSet getProject() {
+        return project;
+    }
+
+    /**
+     * The module discovery of the most recent builds, newest first.
+     */
+    @Exported(inline = true)
+    public List<IvyModuleDiscoveryAction> getBuilds() {
+        List<IvyModuleDiscoveryAction> r = new ArrayList<>();
+        for (IvyModuleSetBuild build : project.getBuilds().limit(MAX_BUILDS)) {
+            IvyModuleDiscoveryAction a = build.getAction(IvyModuleDiscoveryAction.class);
+            if (a != null) {
+                r.add(a);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Names of all the phases of the given builds, as returned by {@link #getBuilds()},
+     * in the order they ran.
+     */
+    public Collection<String> getPhaseNames(List<IvyModuleDiscoveryAction> builds) {
+        Set<String> r = new LinkedHashSet<>();
+        for (IvyModuleDiscoveryAction a : builds) {
+            for (IvyModuleDiscoveryAction.Phase phase : a.getPhases()) {
+                r.add(phase.getName());
+            }
+        }
+        return r;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-hourglass";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.IvyModuleDiscoveryAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "moduleDiscovery";
+    }
+
+    @Extension
+    public static final class Factory extends TransientActionFactory<IvyModuleSet> {
+        @Override
+        public Class<IvyModuleSet> type() {
+            return IvyModuleSet.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(IvyModuleSet target) {
+            return Collections.singletonList(new IvyModuleDiscoveryHistory(target));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package hudson.ivy;
+
+import hudson.model.AbstractProject;
+import hudson.model.DependencyGraph;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import jenkins.model.Jenkins;
+
+/**
+ * A compact copy of the projects and dependencies of a {@link DependencyGraph}, for
+ * the queries that module scheduling and blocking run over and over.
+ * <p>
+ * Each project is given a dense id, and the upstream and downstream projects of
+ * each one are stored in int arrays (compressed sparse rows), so that traversals
+ * neither box ids nor build intermediate sets. {@link #get()} returns the copy of the
+ * current dependency graph of Jenkins, built again after each rebuild of that graph.
+ */
+final class IvyModuleGraph {
+    private static volatile IvyModuleGraph current;
+
+    private final DependencyGraph graph;
+    private final AbstractProject<?, ?>[] projects;
+    private final Map<AbstractProject<?, ?>, Integer> ids;
+
+    /**
+     * The upstream projects of project {@code i} are
+     * {@code upstreams[upstreamStart[i]]} to {@code upstreams[upstreamStart[i + 1] - 1]},
+     * and likewise for the downstream projects.
+     */
+    private final int[] upstreamStart;
+
+    private final int[] upstreams;
+    private final int[] downstreamStart;
+    private final int[] downstreams;
+
+    /**
+     * Computed on first use by {@link #getSameSetUpstream(IvyModule)}, by id.
+     */
+    private final AtomicReferenceArray<IvyModule[]> sameSetUpstreams;
+
+    /**
+     * Returns the copy of the current dependency graph of Jenkins.
+     * <p>
+     * The copy is shared by all callers, so it is built with all the projects, whatever
+     * the caller is allowed to read.
+     */
+    static IvyModuleGraph get() {
+        DependencyGraph graph = Jenkins.get().getDependencyGraph();
+        IvyModuleGraph g = current;
+        if (g == null || g.graph != graph) {
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                g = new IvyModuleGraph(graph, Jenkins.get().allItems(AbstractProject.class));
+            }
+            current = g;
+        }
+        return g;
+    }
+
+    IvyModuleGraph(DependencyGraph graph, Iterable<? extends AbstractProject> allProjects) {
+        this.graph = graph;
+        List<AbstractProject<?, ?>> nodes = new ArrayList<>();
+        ids = new HashMap<>();
+        for (AbstractProject<?, ?> p : allProjects) {
+            id(p, nodes);
+        }
+
+        // downstream projects may not be items of Jenkins any more, so number them as found
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int edgeCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            for (AbstractProject<?, ?> down : graph.getDownstream(nodes.get(i))) {
+                if (edgeCount == from.length) {
+                    from = Arrays.copyOf(from, edgeCount * 2);
+                    to = Arrays.copyOf(to, edgeCount * 2);
+                }
+                from[edgeCount] = i;
+                to[edgeCount] = id(down, nodes);
+                edgeCount++;
+            }
+        }
+
+        int n = nodes.size();
+        projects = nodes.toArray(new AbstractProject<?, ?>[n]);
+        downstreamStart = new int[n + 1];
+        downstreams = new int[edgeCount];
+        fill(from, to, edgeCount, downstreamStart, downstreams);
+        upstreamStart = new int[n + 1];
+        upstreams = new int[edgeCount];
+        fill(to, from, edgeCount, upstreamStart, upstreams);
+        sameSetUpstreams = new AtomicReferenceArray<>(n);
+    }
+
+    private int id(AbstractProject<?, ?> project, List<AbstractProject<?, ?>> nodes) {
+        Integer id = ids.get(project);
+        if (id == null) {
+            id = nodes.size();
+            ids.put(project, id);
+            nodes.add(project);
+        }
+        return id;
+    }
+
+    /**
+     * Lays out the given edges as compressed sparse rows, by source.
+     */
+    private static void fill(int[] sources, int[] targets, int edgeCount, int[] start, int[] edges) {
+        for (int e = 0; e < edgeCount; e++) {
+            start[sources[e] + 1]++;
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        for (int e = 0; e < edgeCount; e++) {
+            edges[next[sources[e]]++] = targets[e];
+        }
+    }
+
+    int size() {
+        return projects.length;
+    }
+
+    /**
+     * Returns the id of the given project, or -1 if it is not part of the graph.
+     */
+    int getId(AbstractProject<?, ?> project) {
+        Integer id = ids.get(project);
+        return id == null ? -1 : id;
+    }
+
+    AbstractProject<?, ?> getProject(int id) {
+        return projects[id];
+    }
+
+    /**
+     * Returns the modules of the same module set upstream of the given one, directly or
+     * not, nearest first.
+     */
+    IvyModule[] getSameSetUpstream(IvyModule module) {
+        int id = getId(module);
+        if (id < 0) {
+            return new IvyModule[0];
+        }
+        IvyModule[] r = sameSetUpstreams.get(id);
+        if (r == null) {
+            List<IvyModule> found = new ArrayList<>();
+            search(
+                    id,
+                    upstreamStart,
+                    upstreams,
+                    p -> {
+                        if (p instanceof IvyModule && p.getParent() == module.getParent()) {
+                            found.add((IvyModule) p);
+                        }
+                        return false;
+                    },
+                    new BitSet(projects.length));
+            r = found.toArray(new IvyModule[0]);
+            sameSetUpstreams.set(id, r);
+        }
+        return r;
+    }
+
+    /**
+     * Returns the ids of the projects downstream of any of the given ones, directly or not.
+     * A given project is only part of the result if it is downstream of a given project.
+     */
+    BitSet getTransitiveDownstream(BitSet ids) {
+        BitSet visited = new BitSet(projects.length);
+        search(ids.stream().toArray(), downstreamStart, downstreams, null, visited);
+        return visited;
+    }
+
+    /**
+     * Returns the ids of the projects upstream of any of the given ones, directly or not.
+     * A given project is only part of the result if it is upstream of a given project.
+     */
+    BitSet getTransitiveUpstream(BitSet ids) {
+        BitSet visited = new BitSet(projects.length);
+        search(ids.stream().toArray(), upstreamStart, upstreams, null, visited);
+        return visited;
+    }
+
+    /**
+     * Returns the ids of the projects downstream, directly or not, of one of the given
+     * projects other than themselves.
+     */
+    BitSet getDownstreamOfOthers(BitSet ids) {
+        int n = projects.length;
+        // up to two of the given projects each project is downstream of, or is; two are
+        // enough to know whether one of them is another project
+        int[] first = new int[n];
+        int[] second = new int[n];
+        Arrays.fill(first, -1);
+        Arrays.fill(second, -1);
+        // each project is queued again at most once, when its second source is found
+        int[] queue = new int[2 * n];
+        int head = 0;
+        int tail = 0;
+        for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+            first[i] = i;
+            queue[tail++] = i;
+        }
+        while (head < tail) {
+            int p = queue[head++];
+            for (int e = downstreamStart[p]; e < downstreamStart[p + 1]; e++) {
+                int q = downstreams[e];
+                boolean changed = addSource(q, first[p], first, second);
+                changed |= addSource(q, second[p], first, second);
+                if (changed) {
+                    queue[tail++] = q;
+                }
+            }
+        }
+        BitSet r = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            if (second[i] >= 0 || (first[i] >= 0 && first[i] != i)) {
+                r.set(i);
+            }
+        }
+        return r;
+    }
+
+    private static boolean addSource(int id, int source, int[] first, int[] second) {
+        if (source < 0 || source == first[id] || second[id] >= 0) {
+            return false;
+        }
+        if (first[id] < 0) {
+            first[id] = source;
+        } else {
+            second[id] = source;
+        }
+        return true;
+    }
+
+    private int search(
+            int from, int[] start, int[] edges, Predicate<? super AbstractProject<?, ?>> predicate, BitSet visited) {
+        return search(new int[] {from}, start, edges, predicate, visited);
+    }
+
+    /**
+     * Breadth first search from the given projects, marking the projects reached in
+     * {@code visited}.
+     *
+     * @return the id of the first project matching the predicate, or -1 if there is
+     *      none or no predicate is given
+     */
+    private int search(
+            int[] from, int[] start, int[] edges, Predicate<? super AbstractProject<?, ?>> predicate, BitSet visited) {
+        // the starting projects are queued again if they are on a cycle
+        int[] queue = new int[projects.length + from.length];
+        int head = 0;
+        int tail = 0;
+        for (int f : from) {
+            queue[tail++] = f;
+        }
+        while (head < tail) {
+            int p = queue[head++];
+            for (int e = start[p]; e < start[p + 1]; e++) {
+                int q = edges[e];
+                if (visited.get(q)) {
+                    continue;
+                }
+                visited.set(q);
+                if (predicate != null && predicate.test(projects[q])) {
+                    return q;
+                }
+                queue[tail++] = q;
+            }
+        }
+        return -1;
+    }
+}
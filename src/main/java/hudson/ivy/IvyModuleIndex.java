@@ -0,0 +1,155 @@
+package hudson.ivy;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Items;
+import hudson.model.listeners.ItemListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.Jenkins;
+
+/**
+ * All the {@link IvyModule}s of this Jenkins instance, by {@link IvyModule#asDependency()}
+ * with and without revision, so that the dependency graph can be computed without
+ * walking every item.
+ * <p>
+ * Modules are added or moved when they are loaded or reconfigured, and removed when
+ * they or their module set are deleted. Whether a module is buildable and allowed to
+ * trigger builds is checked on lookup, so that disabling a module or changing the
+ * configuration of its module set needs no update. The whole index is rebuilt once
+ * all items are loaded, which drops the modules of items that were reloaded.
+ */
+final class IvyModuleIndex {
+    private static final Map<ModuleDependency, List<IvyModule>> MODULES = new HashMap<>();
+
+    /**
+     * The key each module was last indexed under.
+     */
+    private static final Map<IvyModule, ModuleDependency> KEYS = new HashMap<>();
+
+    private IvyModuleIndex() {}
+
+    /**
+     * Indexes the given module under its current revision and branch.
+     */
+    static synchronized void update(IvyModule module) {
+        ModuleDependency key = module.asDependency();
+        ModuleDependency previous = KEYS.put(module, key);
+        if (key.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(previous, module);
+        }
+        for (ModuleDependency k : keys(key)) {
+            MODULES.computeIfAbsent(k, x -> new ArrayList<>(1)).add(module);
+        }
+    }
+
+    static synchronized void remove(IvyModule module) {
+        ModuleDependency previous = KEYS.remove(module);
+        if (previous != null) {
+            unindex(previous, module);
+        }
+    }
+
+    static synchronized void removeAll(IvyModuleSet moduleSet) {
+        for (IvyModule module : new ArrayList<>(KEYS.keySet())) {
+            if (module.getParent() == moduleSet) {
+                remove(module);
+            }
+        }
+    }
+
+    /**
+     * Returns the buildable module matching the given dependency whose module set is
+     * allowed to trigger downstream builds, or null if there is none. If several
+     * modules match, the one {@link Jenkins#getAllItems(Class)} lists last is returned,
+     * as when the modules were looked up in that list.
+     */
+    static synchronized IvyModule find(ModuleDependency dependency) {
+        List<IvyModule> candidates = MODULES.get(dependency);
+        if (candidates == null) {
+            return null;
+        }
+        IvyModule found = null;
+        for (IvyModule m : candidates) {
+            if (m.isBuildable()
+                    && m.getParent().isAllowedToTriggerDownstream()
+                    && (found == null || compareListingOrder(m, found) > 0)) {
+                found = m;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Compares items in the order {@link Jenkins#getAllItems(Class)} lists them: depth
+     * first, and within each item group by {@link Items#BY_NAME}.
+     */
+    static int compareListingOrder(Item a, Item b) {
+        List<Item> pathA = path(a);
+        List<Item> pathB = path(b);
+        for (int i = 0; i < pathA.size() && i < pathB.size(); i++) {
+            if (pathA.get(i) != pathB.get(i)) {
+                return Items.BY_NAME.compare(pathA.get(i), pathB.get(i));
+            }
+        }
+        return Integer.compare(pathA.size(), pathB.size());
+    }
+
+    /**
+     * The given item and the item groups above it, top first.
+     */
+    private static List<Item> path(Item item) {
+        List<Item> path = new ArrayList<>();
+        for (Object i = item; i instanceof Item; i = ((Item) i).getParent()) {
+            path.add((Item) i);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static synchronized void rebuild(List<IvyModule> modules) {
+        MODULES.clear();
+        KEYS.clear();
+        for (IvyModule module : modules) {
+            update(module);
+        }
+    }
+
+    private static void unindex(ModuleDependency key, IvyModule module) {
+        for (ModuleDependency k : keys(key)) {
+            List<IvyModule> modules = MODULES.get(k);
+            if (modules != null) {
+                modules.remove(module);
+                if (modules.isEmpty()) {
+                    MODULES.remove(k);
+                }
+            }
+        }
+    }
+
+    private static List<ModuleDependency> keys(ModuleDependency key) {
+        ModuleDependency withUnknownRevision = key.withUnknownRevision();
+        return key.equals(withUnknownRevision) ? List.of(key) : List.of(key, withUnknownRevision);
+    }
+
+    @Extension
+    public static final class Listener extends ItemListener {
+        @Override
+        public void onLoaded() {
+            rebuild(Jenkins.get().getAllItems(IvyModule.class));
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof IvyModuleSet) {
+                removeAll((IvyModuleSet) item);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 package hudson.ivy;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
@@ -81,7 +82,7 @@ final class IvyModuleInfo implements Serializable {
     public final Set<ModuleDependency> dependencies = new LinkedHashSet<>();
 
     public IvyModuleInfo(ModuleDescriptor module, String relativePathToDescriptor) {
-        this.name = new ModuleName(module);
+        this.name = new ModuleName(module).intern();
         ModuleRevisionId mrid = module.getModuleRevisionId();
         this.revision = (mrid.getRevision() == null
                         || mrid.getRevision().startsWith("working@")
@@ -95,9 +96,27 @@ final class IvyModuleInfo implements Serializable {
         this.relativePathToDescriptor = relativePathToDescriptor;
 
         for (DependencyDescriptor dep : module.getDependencies()) {
-            dependencies.add(new ModuleDependency(dep));
+            dependencies.add(new ModuleDependency(dep).intern());
         }
     }
 
+    /**
+     * Restores a module info sent over as part of an {@link IvyModuleInfoList}.
+     */
+    IvyModuleInfo(
+            ModuleName name,
+            String displayName,
+            String relativePathToDescriptor,
+            String revision,
+            String branch,
+            Collection<ModuleDependency> dependencies) {
+        this.name = name;
+        this.displayName = displayName;
+        this.relativePathToDescriptor = relativePathToDescriptor;
+        this.revision = revision;
+        this.branch = branch;
+        this.dependencies.addAll(dependencies);
+    }
+
     private static final long serialVersionUID = 1L;
 }
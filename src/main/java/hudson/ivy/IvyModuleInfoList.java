@@ -0,0 +1,204 @@
+package hudson.ivy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The modules discovered by {@link IvyModuleSetBuild}, in the form they are sent
+ * back from the build node.
+ * <p>
+ * Rather than serializing every {@link IvyModuleInfo} with its own copies of the
+ * organisation, name, revision and branch strings of each dependency, the list is
+ * written as a table of distinct strings followed by the modules and their
+ * dependencies as indexes into that table, gzipped when large. Decoding builds
+ * the same {@link IvyModuleInfo}s, sharing one instance of each string.
+ */
+final class IvyModuleInfoList implements Serializable {
+    /**
+     * Encoded lists larger than this are compressed.
+     */
+    static final int COMPRESSION_THRESHOLD = 16 * 1024;
+
+    private transient List<IvyModuleInfo> modules;
+
+    /**
+     * Time spent in each phase of module discovery on the build node, in nanoseconds.
+     */
+    private final LinkedHashMap<String, Long> phases;
+
+    IvyModuleInfoList(List<IvyModuleInfo> modules) {
+        this(modules, Collections.emptyMap());
+    }
+
+    IvyModuleInfoList(List<IvyModuleInfo> modules, Map<String, Long> phases) {
+        this.modules = modules;
+        this.phases = new LinkedHashMap<>(phases);
+    }
+
+    List<IvyModuleInfo> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+
+    Map<String, Long> getPhases() {
+        return Collections.unmodifiableMap(phases);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] data = encode(modules);
+        boolean compressed = data.length > COMPRESSION_THRESHOLD;
+        if (compressed) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(data.length / 4);
+            try (OutputStream gzip = new GZIPOutputStream(buf)) {
+                gzip.write(data);
+            }
+            data = buf.toByteArray();
+        }
+        out.writeBoolean(compressed);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        boolean compressed = in.readBoolean();
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupted module list");
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        InputStream stream = new ByteArrayInputStream(data);
+        if (compressed) {
+            stream = new GZIPInputStream(stream);
+        }
+        try (DataInputStream din = new DataInputStream(stream)) {
+            modules = decode(din);
+        }
+    }
+
+    static byte[] encode(List<IvyModuleInfo> modules) throws IOException {
+        StringTable strings = new StringTable();
+        for (IvyModuleInfo module : modules) {
+            strings.add(module.name.organisation);
+            strings.add(module.name.name);
+            strings.add(module.displayName);
+            strings.add(module.relativePathToDescriptor);
+            strings.add(module.revision);
+            strings.add(module.branch);
+            for (ModuleDependency dep : module.dependencies) {
+                strings.add(dep.organisation);
+                strings.add(dep.name);
+                strings.add(dep.revision);
+                strings.add(dep.branch);
+            }
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeInt(strings.values.size());
+            for (String s : strings.values) {
+                out.writeUTF(s);
+            }
+            out.writeInt(modules.size());
+            for (IvyModuleInfo module : modules) {
+                out.writeInt(strings.indexOf(module.name.organisation));
+                out.writeInt(strings.indexOf(module.name.name));
+                out.writeInt(strings.indexOf(module.displayName));
+                out.writeInt(strings.indexOf(module.relativePathToDescriptor));
+                out.writeInt(strings.indexOf(module.revision));
+                out.writeInt(strings.indexOf(module.branch));
+                out.writeInt(module.dependencies.size());
+                for (ModuleDependency dep : module.dependencies) {
+                    out.writeInt(strings.indexOf(dep.organisation));
+                    out.writeInt(strings.indexOf(dep.name));
+                    out.writeInt(strings.indexOf(dep.revision));
+                    out.writeInt(strings.indexOf(dep.branch));
+                }
+            }
+        }
+        return buf.toByteArray();
+    }
+
+    static List<IvyModuleInfo> decode(DataInputStream in) throws IOException {
+        String[] strings = new String[checkCount(in.readInt())];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int count = checkCount(in.readInt());
+        List<IvyModuleInfo> modules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ModuleName name = new ModuleName(string(strings, in), string(strings, in)).intern();
+            String displayName = string(strings, in);
+            String relativePath = string(strings, in);
+            String revision = string(strings, in);
+            String branch = string(strings, in);
+            int depCount = checkCount(in.readInt());
+            Set<ModuleDependency> dependencies = new LinkedHashSet<>(depCount * 2);
+            for (int j = 0; j < depCount; j++) {
+                dependencies.add(new ModuleDependency(
+                                string(strings, in), string(strings, in), string(strings, in), string(strings, in))
+                        .intern());
+            }
+            modules.add(new IvyModuleInfo(name, displayName, relativePath, revision, branch, dependencies));
+        }
+        return modules;
+    }
+
+    private static String string(String[] strings, DataInputStream in) throws IOException {
+        int index = in.readInt();
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Corrupted module list");
+        }
+        return strings[index];
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupted module list");
+        }
+        return count;
+    }
+
+    /**
+     * Distinct strings in the order they were first added. Null is encoded as -1.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void add(String s) {
+            if (s != null && !indexes.containsKey(s)) {
+                indexes.put(s, values.size());
+                values.add(s);
+            }
+        }
+
+        int indexOf(String s) {
+            return s == null ? -1 : indexes.get(s);
+        }
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,172 @@
+package hudson.ivy;
+
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Sends the modules discovered on the build node to the controller while the
+ * remaining descriptors are still being parsed.
+ * <p>
+ * The stream is a sequence of batches of modules in the {@link IvyModuleInfoList}
+ * encoding, followed by the sorted order of the modules as indexes into the
+ * sequence of all the modules sent. A stream that ends without the order means
+ * that discovery failed on the build node.
+ */
+final class IvyModuleInfoStream {
+    /**
+     * Number of modules sent together.
+     */
+    static final int BATCH_SIZE = 50;
+
+    private static final int BATCH = 1;
+    private static final int ORDER = 2;
+
+    private IvyModuleInfoStream() {}
+
+    /**
+     * Receives the modules read from the stream.
+     */
+    interface Handler {
+        void module(IvyModuleInfo module) throws IOException;
+    }
+
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final List<IvyModuleInfo> batch = new ArrayList<>(BATCH_SIZE);
+        private int count;
+
+        Writer(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+        }
+
+        /**
+         * Queues the given module.
+         *
+         * @return the index of the module in the stream.
+         */
+        int add(IvyModuleInfo module) throws IOException {
+            batch.add(module);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+            return count++;
+        }
+
+        /**
+         * Sends the modules queued so far.
+         */
+        void flush() throws IOException {
+            if (!batch.isEmpty()) {
+                byte[] data = IvyModuleInfoList.encode(batch);
+                out.writeByte(BATCH);
+                out.writeInt(data.length);
+                out.write(data);
+                batch.clear();
+            }
+            out.flush();
+        }
+
+        /**
+         * Sends the remaining modules and the order of all the modules sent.
+         */
+        void finish(int[] order) throws IOException {
+            flush();
+            out.writeByte(ORDER);
+            out.writeInt(order.length);
+            for (int i : order) {
+                out.writeInt(i);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the modules that {@code call} writes to {@code out}, like
+     * {@link #read(InputStream, Handler)}. If {@code call} fails, the stream is aborted
+     * with its cause once the modules already received are read, even if the writer
+     * never closes it, as when the channel to the build node is lost.
+     */
+    static int[] read(FastPipedInputStream in, FastPipedOutputStream out, Future<?> call, Handler handler)
+            throws IOException {
+        Thread watcher = new Thread(() -> abortOnFailure(call, out), "Ivy module discovery watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        try {
+            return read(in, handler);
+        } finally {
+            watcher.interrupt();
+        }
+    }
+
+    private static void abortOnFailure(Future<?> call, FastPipedOutputStream out) {
+        try {
+            call.get();
+        } catch (InterruptedException e) {
+            // the stream was read to its end
+        } catch (ExecutionException | CancellationException e) {
+            try {
+                out.error(e instanceof ExecutionException ? e.getCause() : e);
+            } catch (IOException x) {
+                // the stream is no longer read
+            }
+        }
+    }
+
+    /**
+     * Reads the stream to its end, passing each module to the handler.
+     *
+     * @return the order of the modules, or null if the stream ended without it.
+     */
+    static int[] read(InputStream in, Handler handler) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        int[] order = null;
+        try {
+            int type;
+            while ((type = din.read()) != -1) {
+                int length = din.readInt();
+                if (length < 0) {
+                    throw new IOException("Corrupted module stream");
+                }
+                if (type == BATCH) {
+                    byte[] data = new byte[length];
+                    din.readFully(data);
+                    List<IvyModuleInfo> modules =
+                            IvyModuleInfoList.decode(new DataInputStream(new ByteArrayInputStream(data)));
+                    for (IvyModuleInfo module : modules) {
+                        handler.module(module);
+                    }
+                } else if (type == ORDER) {
+                    int[] o = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        o[i] = din.readInt();
+                    }
+                    order = o;
+                } else {
+                    throw new IOException("Corrupted module stream");
+                }
+            }
+        } catch (EOFException e) {
+            return null; // cut short by a failure on the build node
+        }
+        return order;
+    }
+}
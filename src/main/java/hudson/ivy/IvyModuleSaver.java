@@ -0,0 +1,47 @@
+package hudson.ivy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.AtmostOneTaskExecutor;
+
+/**
+ * Saves the modules reconfigured by a build in the background, so that the build does
+ * not wait for their configuration files to be written.
+ * <p>
+ * Modules scheduled while a save is running are saved by the next run, and a module
+ * scheduled several times before it is saved is only written once.
+ */
+final class IvyModuleSaver {
+    private final Set<IvyModule> pending = new LinkedHashSet<>();
+    private final AtmostOneTaskExecutor<Void> executor = new AtmostOneTaskExecutor<>(this::saveAll);
+
+    void saveLater(IvyModule module) {
+        synchronized (pending) {
+            pending.add(module);
+        }
+        executor.submit();
+    }
+
+    private Void saveAll() {
+        List<IvyModule> modules;
+        synchronized (pending) {
+            modules = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (IvyModule module : modules) {
+            try {
+                module.saveIfChanged();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save " + module.getFullName(), e);
+            }
+        }
+        return null;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(IvyModuleSaver.class.getName());
+}
@@ -108,6 +108,22 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
     @CopyOnWrite
     transient List<IvyModule> sortedActiveModules;
 
+    /**
+     * Number of the build that last brought {@link #sortedActiveModules} up to date
+     * with its workspace, or 0 if there is none since the configuration last changed.
+     */
+    transient volatile int modulesUpToDateBuild;
+
+    /**
+     * Digest of the managed Ivy settings used by {@link #modulesUpToDateBuild}, if any.
+     */
+    transient volatile String modulesUpToDateSettings;
+
+    /**
+     * Saves the modules reconfigured by builds, created on first use.
+     */
+    private transient IvyModuleSaver moduleSaver;
+
     private String ivyFilePattern;
 
     private String ivyFileExcludesPattern;
@@ -124,6 +140,49 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
 
     private String ivySettingsPropertyFiles;
 
+    /**
+     * Number of threads used on the build node to parse the Ivy descriptors.
+     * Values below 2 parse the descriptors one after another.
+     */
+    private int descriptorParsingParallelism = 1;
+
+    /**
+     * If true, the parsed Ivy descriptors are cached next to the workspace and
+     * only new or modified descriptors are parsed again.
+     */
+    private boolean cacheParsedDescriptors = false;
+
+    /**
+     * If true, module discovery reads the Ivy descriptors with the lightweight
+     * {@link IvyDescriptorReader} wherever possible instead of Ivy's parser.
+     */
+    private boolean fastDescriptorParsing = false;
+
+    /**
+     * If true, the build node sends the discovered modules back in batches while it
+     * is still parsing, so that they are reconfigured in the meantime.
+     */
+    private boolean streamModuleDiscovery = false;
+
+    /**
+     * If true, the Ivy descriptors are only parsed again when the changes of the build
+     * touch the descriptors or the Ivy settings.
+     */
+    private boolean skipUnchangedDescriptors = false;
+
+    /**
+     * If true, and if aggregatorStyleBuild is false, the modules built by a build of
+     * this module set are scheduled by {@link IvyModuleWaves} as soon as their
+     * upstream modules are built, rather than triggered by them.
+     */
+    private boolean waveScheduling = false;
+
+    /**
+     * The number of modules scheduled by {@link IvyModuleWaves} that may be in the
+     * queue or building at once. Zero means no limit.
+     */
+    private int maxConcurrentModuleBuilds = 0;
+
     private IvyBuilderType ivyBuilderType;
 
     /**
@@ -315,6 +374,19 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
      */
     /*package*/ void onModuleDeleted(IvyModule module) {
         modules.remove(module.getModuleName());
+        IvyModuleIndex.remove(module);
+    }
+
+    /**
+     * Replaces all the modules at once, so that concurrent readers see either the
+     * previous or the new modules, never a mix of both.
+     */
+    /*package*/ void replaceModules(Map<ModuleName, IvyModule> newModules) {
+        if (modules instanceof CopyOnWriteMap) {
+            ((CopyOnWriteMap<ModuleName, IvyModule>) modules).replaceBy(newModules);
+        } else {
+            modules = new CopyOnWriteMap.Tree<>(newModules);
+        }
     }
 
     /**
@@ -415,6 +487,62 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
         return ivyBranch;
     }
 
+    public int getDescriptorParsingParallelism() {
+        return Math.max(1, descriptorParsingParallelism);
+    }
+
+    public void setDescriptorParsingParallelism(int descriptorParsingParallelism) {
+        this.descriptorParsingParallelism = Math.max(1, descriptorParsingParallelism);
+    }
+
+    public boolean isCacheParsedDescriptors() {
+        return cacheParsedDescriptors;
+    }
+
+    public void setCacheParsedDescriptors(boolean cacheParsedDescriptors) {
+        this.cacheParsedDescriptors = cacheParsedDescriptors;
+    }
+
+    public boolean isFastDescriptorParsing() {
+        return fastDescriptorParsing;
+    }
+
+    public void setFastDescriptorParsing(boolean fastDescriptorParsing) {
+        this.fastDescriptorParsing = fastDescriptorParsing;
+    }
+
+    public boolean isStreamModuleDiscovery() {
+        return streamModuleDiscovery;
+    }
+
+    public void setStreamModuleDiscovery(boolean streamModuleDiscovery) {
+        this.streamModuleDiscovery = streamModuleDiscovery;
+    }
+
+    public boolean isSkipUnchangedDescriptors() {
+        return skipUnchangedDescriptors;
+    }
+
+    public void setSkipUnchangedDescriptors(boolean skipUnchangedDescriptors) {
+        this.skipUnchangedDescriptors = skipUnchangedDescriptors;
+    }
+
+    public boolean isWaveScheduling() {
+        return waveScheduling;
+    }
+
+    public void setWaveScheduling(boolean waveScheduling) {
+        this.waveScheduling = waveScheduling;
+    }
+
+    public int getMaxConcurrentModuleBuilds() {
+        return Math.max(0, maxConcurrentModuleBuilds);
+    }
+
+    public void setMaxConcurrentModuleBuilds(int maxConcurrentModuleBuilds) {
+        this.maxConcurrentModuleBuilds = Math.max(0, maxConcurrentModuleBuilds);
+    }
+
     public void setIvyBranch(String ivyBranch) {
         this.ivyBranch = ivyBranch;
     }
@@ -543,14 +671,30 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
 
         if (!isAggregatorStyleBuild()) {
             for (IvyModule module : getModules()) {
-                module.save();
+                module.saveIfChanged();
             }
         }
     }
 
+    /**
+     * Saves the given module in the background.
+     */
+    /* package */ void saveLater(IvyModule module) {
+        IvyModuleSaver saver;
+        synchronized (this) {
+            if (moduleSaver == null) {
+                moduleSaver = new IvyModuleSaver();
+            }
+            saver = moduleSaver;
+        }
+        saver.saveLater(module);
+    }
+
     @Override
     public void onLoad(ItemGroup<? extends Item> parent, String name) throws IOException {
+        IvyModuleIndex.removeAll(this); // the modules are about to be loaded again
         modules = Collections.emptyMap(); // needed during load
+        modulesUpToDateBuild = 0;
         super.onLoad(parent, name);
 
         modules = loadChildren(this, getModulesDir(), IvyModule::getModuleName);
@@ -652,8 +796,8 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
             return cob;
         }
 
-        for (IvyModule module : modules.values()) {
-            if (module.isBuilding() || module.isInQueue()) {
+        for (IvyModule module : IvyModuleActivity.getActiveModules(this)) {
+            if (modules.get(module.getModuleName()) == module && (module.isBuilding() || module.isInQueue())) {
                 return new BecauseOfModuleBuildInProgress(module);
             }
         }
@@ -708,6 +852,12 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
         settings = Util.fixEmptyAndTrim(json.getString("settings"));
         ivySettingsPropertyFiles = Util.fixEmptyAndTrim(json.getString("ivySettingsPropertyFiles"));
         ivyBranch = Util.fixEmptyAndTrim(json.getString("ivyBranch"));
+        setDescriptorParsingParallelism(json.optInt("descriptorParsingParallelism", 1));
+        cacheParsedDescriptors = json.optBoolean("cacheParsedDescriptors");
+        fastDescriptorParsing = json.optBoolean("fastDescriptorParsing");
+        streamModuleDiscovery = json.optBoolean("streamModuleDiscovery");
+        skipUnchangedDescriptors = json.optBoolean("skipUnchangedDescriptors");
+        modulesUpToDateBuild = 0; // the configuration may affect module discovery
         relativePathToDescriptorFromModuleRoot =
                 Util.fixEmptyAndTrim(json.getString("relativePathToDescriptorFromModuleRoot"));
         JSONObject ivyBuilderTypeJson = json.getJSONObject("ivyBuilderType");
@@ -718,6 +868,11 @@ public final class IvyModuleSet extends AbstractIvyProject<IvyModuleSet, IvyModu
             throw new FormException("Error creating specified builder type.", e, "ivyBuilderType");
         }
         aggregatorStyleBuild = !req.hasParameter("perModuleBuild");
+        if (!aggregatorStyleBuild) {
+            JSONObject perModuleBuild = json.getJSONObject("perModuleBuild");
+            waveScheduling = perModuleBuild.optBoolean("waveScheduling");
+            setMaxConcurrentModuleBuilds(perModuleBuild.optInt("maxConcurrentModuleBuilds", 0));
+        }
         incrementalBuild = req.hasParameter("incrementalBuild");
         if (incrementalBuild) {
             changedModulesProperty =
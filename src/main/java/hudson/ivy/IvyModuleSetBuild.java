@@ -34,6 +34,7 @@ import hudson.ivy.builder.IvyBuilderType;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.Build;
+import hudson.model.DependencyGraph;
 import hudson.model.BuildListener;
 import hudson.model.Environment;
 import hudson.model.Executor;
@@ -45,7 +46,11 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.Callable;
 import hudson.remoting.Channel;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.RemoteOutputStream;
 import hudson.scm.ChangeLogSet;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.Publisher;
 import hudson.util.StreamTaskListener;
@@ -57,30 +62,42 @@ import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.xml.stream.XMLStreamException;
 import jenkins.model.Jenkins;
 import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.SystemProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.ivy.Ivy;
 import org.apache.ivy.Ivy.IvyCallback;
 import org.apache.ivy.core.IvyContext;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
 import org.apache.ivy.core.settings.IvySettings;
-import org.apache.ivy.core.sort.SortOptions;
 import org.apache.ivy.plugins.parser.ModuleDescriptorParserRegistry;
 import org.apache.ivy.util.Message;
 import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.jenkinsci.lib.configprovider.model.Config;
 import org.jenkinsci.plugins.configfiles.ConfigFiles;
 import org.jenkinsci.plugins.configfiles.common.CleanTempFilesAction;
@@ -116,6 +133,16 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
      */
     private transient String settings;
 
+    /**
+     * Digest of the managed Ivy settings used by this build, if any.
+     */
+    private transient String managedSettingsDigest;
+
+    /**
+     * Computed by {@link #getChangeSetFor(IvyModule)}.
+     */
+    private transient volatile ModuleChanges moduleChanges;
+
     public IvyModuleSetBuild(IvyModuleSet job) throws IOException {
         super(job);
     }
@@ -166,32 +193,80 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
         return r;
     }
 
+    private static String toPlatformPath(String path) {
+        return path.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+    }
+
     /**
      * Returns the filtered changeset entries that match the given module.
      */
     /* package */ List<ChangeLogSet.Entry> getChangeSetFor(final IvyModule mod) {
-        return new ArrayList<>() {
-            {
-                for (ChangeLogSet.Entry e : getChangeSet()) {
-                    if (isDescendantOf(e, mod)) {
-                        add(e);
-                    }
-                }
+        ChangeLogSet<? extends ChangeLogSet.Entry> changeSet = getChangeSet();
+        ModuleChanges changes = moduleChanges;
+        if (changes == null || !changes.isUpToDate(changeSet, mod)) {
+            Set<IvyModule> modules = new HashSet<>(getProject().getModules());
+            modules.add(mod);
+            if (changes != null && changes.changeSet == changeSet) {
+                // keep the modules asked for before, such as the ones no longer in the project
+                modules.addAll(changes.roots.keySet());
             }
+            changes = new ModuleChanges(changeSet, modules);
+            moduleChanges = changes;
+        }
+        return changes.get(mod);
+    }
+
+    /**
+     * The changeset entries of each module, so that the changes are only matched
+     * against the module roots once per build.
+     * <p>
+     * An entry belongs to every module whose root is a prefix of one of its affected
+     * paths, so changes to a nested module also belong to the enclosing modules.
+     */
+    private static final class ModuleChanges {
+        private final ChangeLogSet<? extends ChangeLogSet.Entry> changeSet;
 
-            /**
-             * Does this change happen somewhere in the given module or its
-             * descendants?
-             */
-            private boolean isDescendantOf(ChangeLogSet.Entry e, IvyModule mod) {
+        /**
+         * The root each module had when the entries were matched.
+         */
+        private final Map<IvyModule, String> roots = new HashMap<>();
+
+        private final Map<IvyModule, List<ChangeLogSet.Entry>> entries = new HashMap<>();
+
+        ModuleChanges(ChangeLogSet<? extends ChangeLogSet.Entry> changeSet, Collection<IvyModule> modules) {
+            this.changeSet = changeSet;
+            PathPrefixTrie<IvyModule> trie = new PathPrefixTrie<>();
+            for (IvyModule module : modules) {
+                String root = module.getRelativePathToModuleRoot();
+                roots.put(module, root);
+                if (root != null) {
+                    trie.put(root, module);
+                }
+            }
+            Set<IvyModule> owners = new HashSet<>();
+            for (ChangeLogSet.Entry e : changeSet) {
+                owners.clear();
                 for (String path : e.getAffectedPaths()) {
-                    if (path != null && path.startsWith(mod.getRelativePathToModuleRoot())) {
-                        return true;
+                    if (path != null) {
+                        trie.collectPrefixesOf(path, owners);
                     }
                 }
-                return false;
+                for (IvyModule owner : owners) {
+                    entries.computeIfAbsent(owner, k -> new ArrayList<>()).add(e);
+                }
             }
-        };
+        }
+
+        boolean isUpToDate(ChangeLogSet<? extends ChangeLogSet.Entry> changeSet, IvyModule module) {
+            return this.changeSet == changeSet
+                    && roots.containsKey(module)
+                    && Objects.equals(roots.get(module), module.getRelativePathToModuleRoot());
+        }
+
+        List<ChangeLogSet.Entry> get(IvyModule module) {
+            List<ChangeLogSet.Entry> r = entries.get(module);
+            return r == null ? Collections.emptyList() : Collections.unmodifiableList(r);
+        }
     }
 
     /**
@@ -375,6 +450,17 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
     private class RunnerImpl extends AbstractRunner {
         private Map<ModuleName, IvyBuild.ProxyImpl2> proxies;
 
+        /**
+         * Whether module discovery changed a module in a way that affects the dependency graph.
+         */
+        private boolean dependencyGraphChanged;
+
+        /**
+         * The pending rebuild of the dependency graph requested by the module discovery of
+         * an aggregator build, if any.
+         */
+        private Future<DependencyGraph> dependencyGraphRebuild;
+
         @Override
         protected Result doRun(final BuildListener listener) throws Exception {
             PrintStream logger = listener.getLogger();
@@ -389,6 +475,7 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
                 if (config != null) {
                     FilePath tmp = getWorkspace().createTextTempFile("ivy", "xml", config.content);
                     settings = tmp.getRemote();
+                    managedSettingsDigest = Util.getDigestOf(config.content);
                     addAction(new CleanTempFilesAction(settings));
 
                 } else {
@@ -402,6 +489,7 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
                     // start module builds
                     parseIvyDescriptorFiles(listener, logger, envVars);
                     Set<IvyModule> triggeredModules = new HashSet<>();
+                    List<IvyModule> modulesToBuild = new ArrayList<>();
                     if (!project.isIncrementalBuild()
                             || IvyModuleSetBuild.this.getChangeSet().isEmptySet()) {
                         for (IvyModule module : project.sortedActiveModules) {
@@ -422,9 +510,7 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
 
                             if (triggerBuild) {
                                 logger.println("Triggering " + module.getModuleName());
-                                module.scheduleBuild(new ParameterizedUpstreamCause(
-                                        IvyModuleSetBuild.this,
-                                        IvyModuleSetBuild.this.getActions(ParametersAction.class)));
+                                modulesToBuild.add(module);
                             }
                             triggeredModules.add(module);
                         }
@@ -452,13 +538,17 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
 
                             if (triggerBuild) {
                                 logger.println("Triggering " + module.getModuleName());
-                                module.scheduleBuild(new ParameterizedUpstreamCause(
-                                        IvyModuleSetBuild.this,
-                                        IvyModuleSetBuild.this.getActions(ParametersAction.class)));
+                                modulesToBuild.add(module);
                                 triggeredModules.add(module);
                             }
                         }
                     }
+                    if (project.isWaveScheduling()) {
+                        IvyModuleWaves.start(
+                                IvyModuleSetBuild.this, project.sortedActiveModules, modulesToBuild, logger);
+                    } else {
+                        scheduleBuilds(modulesToBuild);
+                    }
                 } else {
                     // do builds here
                     try {
@@ -567,18 +657,59 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
 
         private void parseIvyDescriptorFiles(BuildListener listener, PrintStream logger, EnvVars envVars)
                 throws IOException, InterruptedException {
+            IvyModuleDiscoveryAction.Stopwatch stopwatch = new IvyModuleDiscoveryAction.Stopwatch();
+            if (keepUnchangedModules(logger, stopwatch)) {
+                return;
+            }
             logger.println("Parsing Ivy Descriptor Files");
 
-            List<IvyModuleInfo> ivyDescriptors;
+            Map<ModuleName, IvyModule> modules = project.modules;
+            // the modules to reconfigure, as they were before parsing
+            Map<ModuleName, IvyModule> existing = new HashMap<>(modules);
+
+            List<IvyModuleInfo> ivyDescriptors = null;
+            List<IvyModule> sortedModules = null;
             // 2015-11-25 Matthias Bechtold: Parse all modules in workspace rather than the first module's folder -
             // fixes JENKINS-13440
             FilePath moduleRoot = getModuleRoots().length > 1 ? getModuleRoot().getParent() : getModuleRoot();
             try {
-                IvyXmlParser parser = new IvyXmlParser(listener, project, settings, moduleRoot.getRemote());
+                String descriptorCache = null;
+                if (project.isCacheParsedDescriptors()) {
+                    descriptorCache = WorkspaceList.tempDir(getWorkspace())
+                            .child(IvyDescriptorCache.FILE_NAME)
+                            .getRemote();
+                }
+                FastPipedInputStream moduleStream = null;
+                FastPipedOutputStream modulePipe = null;
+                if (project.isStreamModuleDiscovery()) {
+                    moduleStream = new FastPipedInputStream();
+                    modulePipe = new FastPipedOutputStream(moduleStream);
+                }
+                IvyXmlParser parser = new IvyXmlParser(
+                        listener,
+                        project,
+                        settings,
+                        moduleRoot.getRemote(),
+                        descriptorCache,
+                        modulePipe == null ? null : new RemoteOutputStream(modulePipe));
                 if (moduleRoot.getChannel() instanceof Channel) {
                     ((Channel) moduleRoot.getChannel()).preloadJar(parser, Ivy.class);
                 }
-                ivyDescriptors = moduleRoot.act(parser);
+                stopwatch.lap("Prepare module discovery");
+                if (moduleStream == null) {
+                    long start = System.nanoTime();
+                    IvyModuleInfoList discovered = moduleRoot.act(parser);
+                    long remote = System.nanoTime() - start;
+                    for (long nanos : discovered.getPhases().values()) {
+                        remote -= nanos;
+                    }
+                    stopwatch.addAll(discovered.getPhases());
+                    stopwatch.add("Remoting", Math.max(0, remote));
+                    ivyDescriptors = discovered.getModules();
+                } else {
+                    sortedModules = streamModules(
+                            moduleRoot, parser, moduleStream, modulePipe, existing, logger, stopwatch);
+                }
             } catch (IOException e) {
                 if (e.getCause() instanceof AbortException) {
                     throw (AbortException) e.getCause();
@@ -588,52 +719,281 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
                 throw new IOException("Unable to parse ivy descriptors", e);
             }
 
-            // update the module list
-            Map<ModuleName, IvyModule> modules = project.modules;
+            if (sortedModules == null) {
+                sortedModules = new ArrayList<>();
+                for (IvyModuleInfo ivyDescriptor : ivyDescriptors) {
+                    sortedModules.add(configureModule(ivyDescriptor, existing, logger, stopwatch));
+                }
+            }
+            stopwatch.restart();
+
+            // update the module list off to the side, then publish it at once
             synchronized (modules) {
-                Map<ModuleName, IvyModule> old = new HashMap<>(modules);
-                List<IvyModule> sortedModules = new ArrayList<>();
+                Map<ModuleName, IvyModule> updated = new HashMap<>();
+                for (IvyModule mm : sortedModules) {
+                    updated.put(mm.getModuleName(), mm);
+                }
 
-                modules.clear();
-                for (IvyModuleInfo ivyDescriptor : ivyDescriptors) {
-                    IvyModule mm = old.get(ivyDescriptor.name);
-                    if (mm != null) { // found an existing matching module
+                // remaining modules are no longer active.
+                for (Entry<ModuleName, IvyModule> e : modules.entrySet()) {
+                    if (!updated.containsKey(e.getKey())) {
+                        IvyModule om = e.getValue();
                         if (debug) {
-                            logger.println("Reconfiguring " + mm);
+                            logger.println("Disabling " + om);
+                        }
+                        if (!om.isDisabled()) {
+                            om.makeDisabled(true);
+                            dependencyGraphChanged = true;
                         }
-                        mm.reconfigure(ivyDescriptor);
-                        modules.put(ivyDescriptor.name, mm);
-                    } else { // this looks like a new module
-                        logger.println(Messages.IvyModuleSetBuild_DiscoveredModule(
-                                ivyDescriptor.name, ivyDescriptor.displayName));
-                        mm = new IvyModule(project, ivyDescriptor, getNumber());
-                        modules.put(mm.getModuleName(), mm);
+                        updated.put(e.getKey(), om);
                     }
-                    sortedModules.add(mm);
-                    mm.save();
                 }
+                project.replaceModules(updated);
 
                 // at this point the list contains all the live modules
                 project.sortedActiveModules = sortedModules;
+            }
+            stopwatch.lap("Update module list");
+
+            if (!dependencyGraphChanged) {
+                logger.println("No module or dependency changed, keeping the dependency graph");
+            } else if (project.isAggregatorStyleBuild()) {
+                // only needed to schedule the downstream builds once the modules are built
+                logger.println(
+                        "The modules or their dependencies changed, rebuilding the dependency graph in the background");
+                dependencyGraphRebuild = Jenkins.get().rebuildDependencyGraphAsync();
+                stopwatch.lap("Request dependency graph rebuild");
+            } else {
+                // the module builds are triggered from the new graph right away
+                logger.println("The modules or their dependencies changed, rebuilding the dependency graph");
+                Jenkins.get().rebuildDependencyGraph();
+                stopwatch.lap("Rebuild dependency graph");
+            }
 
-                // remaining modules are no longer active.
-                old.keySet().removeAll(modules.keySet());
-                for (IvyModule om : old.values()) {
-                    if (debug) {
-                        logger.println("Disabling " + om);
-                    }
-                    om.makeDisabled(true);
-                }
-                modules.putAll(old);
+            // module builds must start with this build's number
+            for (IvyModule m : modules.values()) {
+                m.updateNextBuildNumber(getNumber());
             }
+            stopwatch.lap("Update build numbers");
+
+            project.modulesUpToDateSettings = managedSettingsDigest;
+            project.modulesUpToDateBuild = getNumber();
+            addAction(new IvyModuleDiscoveryAction(stopwatch.getPhases(), true, sortedModules.size()));
+        }
 
-            // we might have added new modules
-            Jenkins.get().rebuildDependencyGraph();
+        /**
+         * Waits for the dependency graph to include the modules discovered by this build.
+         */
+        private void awaitDependencyGraph() throws IOException, InterruptedException {
+            if (dependencyGraphRebuild == null) {
+                return;
+            }
+            try {
+                dependencyGraphRebuild.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to rebuild the dependency graph", e.getCause());
+            } finally {
+                dependencyGraphRebuild = null;
+            }
+        }
 
+        /**
+         * Keeps the modules discovered by the previous build when
+         * {@link IvyModuleSet#isSkipUnchangedDescriptors()} is set and none of the changes of
+         * this build can affect them.
+         *
+         * @return true if the modules were kept and the descriptors need not be parsed
+         */
+        private boolean keepUnchangedModules(PrintStream logger, IvyModuleDiscoveryAction.Stopwatch stopwatch) {
+            if (!project.isSkipUnchangedDescriptors()) {
+                return false;
+            }
+            IvyModuleSetBuild previous = getPreviousBuild();
+            List<IvyModule> sortedModules = project.sortedActiveModules;
+            if (previous == null
+                    || sortedModules == null
+                    || previous.getNumber() != project.modulesUpToDateBuild
+                    || !Objects.equals(managedSettingsDigest, project.modulesUpToDateSettings)) {
+                logger.println(
+                        "The modules of the previous build are not known, the Ivy descriptors need to be parsed");
+                return false;
+            }
+            String changed = findIvyInputChange();
+            stopwatch.lap("Check for Ivy changes");
+            if (changed != null) {
+                logger.println(
+                        "Changes to " + changed + " may affect the modules, the Ivy descriptors need to be parsed");
+                return false;
+            }
+
+            logger.println("No Ivy descriptor or settings changed since build #" + previous.getNumber()
+                    + ", keeping its " + sortedModules.size() + " modules");
             // module builds must start with this build's number
-            for (IvyModule m : modules.values()) {
+            for (IvyModule m : project.modules.values()) {
                 m.updateNextBuildNumber(getNumber());
             }
+            stopwatch.lap("Update build numbers");
+            project.modulesUpToDateBuild = getNumber();
+            addAction(new IvyModuleDiscoveryAction(stopwatch.getPhases(), false, sortedModules.size()));
+            return true;
+        }
+
+        /**
+         * Looks for a path changed by this build that matches the Ivy descriptor pattern or
+         * the name of the Ivy settings file or of a settings property file.
+         * <p>
+         * Paths in the change set are relative to the repository rather than to the module
+         * root, so the descriptor pattern is also matched at any depth, and excludes are
+         * not taken into account.
+         *
+         * @return the first such path, or null if there is none
+         */
+        private String findIvyInputChange() {
+            List<String> patterns = new ArrayList<>();
+            String ivyFilePattern = project.getIvyFilePattern() == null
+                    ? IvyXmlParser.IVY_XML_PATTERN
+                    : project.getIvyFilePattern();
+            for (String pattern : StringUtils.split(ivyFilePattern, ',')) {
+                pattern = toPlatformPath(pattern.trim());
+                if (pattern.endsWith(File.separator)) {
+                    pattern += SelectorUtils.DEEP_TREE_MATCH;
+                }
+                patterns.add(pattern);
+                patterns.add(SelectorUtils.DEEP_TREE_MATCH + File.separator + pattern);
+            }
+            List<String> settingsFiles = new ArrayList<>();
+            if (project.getIvySettingsFile() != null) {
+                settingsFiles.add(project.getIvySettingsFile());
+            }
+            if (project.getIvySettingsPropertyFiles() != null) {
+                settingsFiles.addAll(Arrays.asList(StringUtils.split(project.getIvySettingsPropertyFiles(), ',')));
+            }
+            for (String file : settingsFiles) {
+                String name = new File(toPlatformPath(file.trim())).getName();
+                patterns.add(SelectorUtils.DEEP_TREE_MATCH + File.separator + name);
+            }
+
+            for (ChangeLogSet.Entry e : getChangeSet()) {
+                Collection<String> paths;
+                try {
+                    paths = e.getAffectedPaths();
+                } catch (UnsupportedOperationException x) {
+                    return "the workspace"; // the SCM does not tell which files changed
+                }
+                for (String path : paths) {
+                    if (path == null) {
+                        continue;
+                    }
+                    String p = toPlatformPath(path);
+                    for (String pattern : patterns) {
+                        if (SelectorUtils.matchPath(pattern, p)) {
+                            return path;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reconfigures the existing module matching the given descriptor, or creates a
+         * new one, and saves it if it changed. Existing modules are saved in the
+         * background unless {@link IvyModuleSetBuild#saveModulesInBuildThread} is set.
+         */
+        private IvyModule configureModule(
+                IvyModuleInfo ivyDescriptor,
+                Map<ModuleName, IvyModule> existing,
+                PrintStream logger,
+                IvyModuleDiscoveryAction.Stopwatch stopwatch)
+                throws IOException {
+            long start = System.nanoTime();
+            boolean created = false;
+            boolean changed = false;
+            IvyModule mm = existing.get(ivyDescriptor.name);
+            if (mm != null) { // found an existing matching module
+                if (debug) {
+                    logger.println("Reconfiguring " + mm);
+                }
+                if (mm.affectsDependencyGraph(ivyDescriptor)) {
+                    dependencyGraphChanged = true;
+                }
+                changed = mm.reconfigure(ivyDescriptor);
+            } else { // this looks like a new module
+                logger.println(
+                        Messages.IvyModuleSetBuild_DiscoveredModule(ivyDescriptor.name, ivyDescriptor.displayName));
+                mm = new IvyModule(project, ivyDescriptor, getNumber());
+                created = true;
+                dependencyGraphChanged = true;
+            }
+            long configured = System.nanoTime();
+            stopwatch.add("Reconfigure modules", configured - start);
+            if (created || (changed && saveModulesInBuildThread)) {
+                mm.save();
+            } else if (changed) {
+                project.saveLater(mm);
+            }
+            stopwatch.add("Save modules", System.nanoTime() - configured);
+            return mm;
+        }
+
+        /**
+         * Runs the parser in the background and reconfigures the modules as the build node
+         * sends them through {@code moduleStream}, while it is still parsing the rest.
+         * The phases of the build node are added to {@code stopwatch} after those of the
+         * controller, although they overlap. If the parser fails, or the channel to the
+         * build node is lost, its failure is thrown once the modules already sent are read.
+         *
+         * @return the reconfigured modules, in the order they must be built
+         */
+        private List<IvyModule> streamModules(
+                FilePath moduleRoot,
+                IvyXmlParser parser,
+                FastPipedInputStream moduleStream,
+                FastPipedOutputStream modulePipe,
+                Map<ModuleName, IvyModule> existing,
+                PrintStream logger,
+                IvyModuleDiscoveryAction.Stopwatch stopwatch)
+                throws Throwable {
+            Future<IvyModuleInfoList> future = moduleRoot.getChannel().callAsync(parser);
+            List<IvyModule> received = new ArrayList<>();
+            int[] order;
+            try {
+                order = IvyModuleInfoStream.read(
+                        moduleStream,
+                        modulePipe,
+                        future,
+                        ivyDescriptor -> received.add(configureModule(ivyDescriptor, existing, logger, stopwatch)));
+            } catch (IOException | RuntimeException e) {
+                future.cancel(true);
+                try {
+                    future.get();
+                } catch (ExecutionException x) {
+                    // the failure of the parser aborted the stream
+                    throw x.getCause();
+                } catch (CancellationException x) {
+                    // the stream failed on its own
+                }
+                throw e;
+            } finally {
+                moduleStream.close();
+            }
+            try {
+                stopwatch.addAll(future.get().getPhases());
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+            if (order == null) {
+                throw new IOException("Module discovery ended before sending the order of the modules");
+            }
+            if (debug) {
+                logger.println("Reconfigured " + received.size() + " modules while parsing Ivy descriptors");
+            }
+
+            List<IvyModule> sortedModules = new ArrayList<>(order.length);
+            for (int i : order) {
+                sortedModules.add(received.get(i));
+            }
+            return sortedModules;
         }
 
         @Override
@@ -666,6 +1026,7 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
             if (project.isAggregatorStyleBuild()) {
                 // schedule downstream builds. for non aggregator style builds,
                 // this is done by each module
+                awaitDependencyGraph();
                 scheduleDownstreamBuilds(listener);
                 performAllBuildSteps(listener, project.getPublishers(), false);
             }
@@ -812,8 +1173,8 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
      * Executed on the slave to parse ivy.xml files and extract information into
      * {@link IvyModuleInfo}, which will be then brought back to the master.
      */
-    private static final class IvyXmlParser extends MasterToSlaveCallable<List<IvyModuleInfo>, Throwable>
-            implements Callable<List<IvyModuleInfo>, Throwable> {
+    private static final class IvyXmlParser extends MasterToSlaveCallable<IvyModuleInfoList, Throwable>
+            implements Callable<IvyModuleInfoList, Throwable> {
         private static final String IVY_XML_PATTERN = "**/ivy.xml";
         private final BuildListener listener;
         /**
@@ -822,6 +1183,11 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
          */
         private final boolean verbose = debug;
 
+        /**
+         * Likewise for {@link IvyModuleSetBuild#useAntDirectoryScanner}.
+         */
+        private final boolean useAntScanner = useAntDirectoryScanner;
+
         private final String ivyFilePattern;
         private final String ivyFileExcludePattern;
 
@@ -833,7 +1199,31 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
         private final String workspace;
         private final String workspaceProper;
 
-        public IvyXmlParser(BuildListener listener, IvyModuleSet project, String ivySettingsFile, String workspace) {
+        /** Full name of the job, Ivy instances are only reused by builds of the same job */
+        private final String job;
+
+        /** Number of threads used to parse the descriptors */
+        private final int parallelism;
+
+        /** Absolute path to the descriptor cache file, or null if descriptors are not cached */
+        private final String descriptorCache;
+
+        /** Whether to read the descriptors with {@link IvyDescriptorReader} where possible */
+        private final boolean fastParsing;
+
+        /**
+         * If not null, the modules are sent through this stream as they are parsed, see
+         * {@link IvyModuleInfoStream}, and the list returned by {@link #call()} has no modules.
+         */
+        private final RemoteOutputStream moduleStream;
+
+        public IvyXmlParser(
+                BuildListener listener,
+                IvyModuleSet project,
+                String ivySettingsFile,
+                String workspace,
+                String descriptorCache,
+                RemoteOutputStream moduleStream) {
             // project cannot be shipped to the remote JVM, so all the relevant
             // properties need to be captured now.
             this.listener = listener;
@@ -844,77 +1234,298 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
             this.ivySettingsFile = ivySettingsFile;
             this.ivySettingsPropertyFiles = project.getIvySettingsPropertyFiles();
             this.workspaceProper = project.getLastBuild().getWorkspace().getRemote();
+            this.job = project.getFullName();
+            this.parallelism = project.getDescriptorParsingParallelism();
+            this.descriptorCache = descriptorCache;
+            this.fastParsing = project.isFastDescriptorParsing();
+            this.moduleStream = moduleStream;
         }
 
         @Override
-        @SuppressWarnings("unchecked")
-        public List<IvyModuleInfo> call() throws Throwable {
+        public IvyModuleInfoList call() throws Throwable {
+            if (moduleStream == null) {
+                return discover(null);
+            }
+            try (IvyModuleInfoStream.Writer stream = new IvyModuleInfoStream.Writer(moduleStream)) {
+                return discover(stream);
+            }
+        }
+
+        /**
+         * @param stream
+         *      If not null, each module is sent to it as soon as it is parsed, followed by
+         *      the sorted order of the modules, and the returned list has no modules, only
+         *      the duration of each phase.
+         */
+        private IvyModuleInfoList discover(IvyModuleInfoStream.Writer stream) throws Throwable {
+            IvyModuleDiscoveryAction.Stopwatch stopwatch = new IvyModuleDiscoveryAction.Stopwatch();
             File ws = new File(workspace);
-            FileSet ivyFiles = Util.createFileSet(ws, ivyFilePattern, ivyFileExcludePattern);
             final PrintStream logger = listener.getLogger();
 
-            Ivy ivy = getIvy(logger);
-            HashMap<ModuleDescriptor, String> moduleDescriptors = new HashMap<>();
-            for (String ivyFilePath : ivyFiles.getDirectoryScanner().getIncludedFiles()) {
-                final File ivyFile = new File(ws, ivyFilePath);
+            File settingsLoc = getSettingsFile();
+            List<File> propertyFiles = getPropertyFiles();
+            String settingsFingerprint = IvyDescriptorCache.fingerprint(settingsLoc, propertyFiles, ivyBranch);
+            IvyInstanceCache.Entry configured = getIvy(settingsLoc, propertyFiles, settingsFingerprint, logger);
+            Ivy ivy = configured == null ? null : configured.ivy;
+            if (configured != null) {
+                // also covers the files included by the settings
+                settingsFingerprint = configured.fingerprint;
+            }
+            stopwatch.lap("Load Ivy settings");
+
+            String[] ivyFilePaths;
+            if (useAntScanner) {
+                FileSet ivyFiles = Util.createFileSet(ws, ivyFilePattern, ivyFileExcludePattern);
+                ivyFilePaths = ivyFiles.getDirectoryScanner().getIncludedFiles();
+            } else {
+                ivyFilePaths =
+                        new IvyDescriptorScanner(ivyFilePattern, ivyFileExcludePattern).scan(ws, parallelism);
+            }
+            List<String> relativePaths = new ArrayList<>(ivyFilePaths.length);
+            for (String ivyFilePath : ivyFilePaths) {
+                relativePaths.add(ivyFilePath.replace('\\', '/'));
+            }
+            stopwatch.lap("Scan for descriptors");
+
+            ModuleDescriptor[] modules = new ModuleDescriptor[ivyFilePaths.length];
+            IvyDescriptorCache cache = null;
+            if (descriptorCache != null) {
+                cache = IvyDescriptorCache.load(new File(descriptorCache), settingsFingerprint);
+                // cached descriptors are rebuilt against the settings of this Ivy instance
+                ivy.pushContext();
+                try {
+                    for (int i = 0; i < ivyFilePaths.length; i++) {
+                        modules[i] = cache.get(relativePaths.get(i), new File(ws, ivyFilePaths[i]));
+                    }
+                } finally {
+                    ivy.popContext();
+                }
+                stopwatch.lap("Read descriptor cache");
+            }
+            boolean[] cached = new boolean[modules.length];
+            for (int i = 0; i < modules.length; i++) {
+                cached[i] = modules[i] != null;
+            }
 
-                ModuleDescriptor module = (ModuleDescriptor) ivy.execute(new IvyCallback() {
-                    @Override
-                    public Object doInIvyContext(Ivy ivy, IvyContext context) {
-                        try {
-                            return ModuleDescriptorParserRegistry.getInstance()
-                                    .parseDescriptor(
-                                            ivy.getSettings(),
-                                            ivyFile.toURI().toURL(),
-                                            ivy.getSettings().doValidate());
-                        } catch (MalformedURLException e) {
-                            logger.println("The URL is malformed : " + ivyFile);
-                            return null;
-                        } catch (ParseException e) {
-                            logger.println("Parsing error while reading the ivy file " + ivyFile);
-                            return null;
-                        } catch (IOException e) {
-                            logger.println("I/O error while reading the ivy file " + ivyFile);
-                            return null;
-                        }
+            final IvyModuleInfo[] infos = new IvyModuleInfo[modules.length];
+            final int[] streamIndexes = new int[modules.length];
+            ParseListener onParsed = i -> {
+                if (modules[i] == null) {
+                    return;
+                }
+                infos[i] = new IvyModuleInfo(modules[i], relativePaths.get(i));
+                if (stream != null) {
+                    streamIndexes[i] = stream.add(infos[i]);
+                    if (verbose) {
+                        logger.printf(
+                                "Discovered module %s at %s.\n",
+                                infos[i].displayName, infos[i].relativePathToDescriptor);
                     }
-                });
-                moduleDescriptors.put(module, ivyFilePath.replace('\\', '/'));
+                }
+            };
+            for (int i = 0; i < modules.length; i++) {
+                if (cached[i]) {
+                    onParsed.parsed(i);
+                }
             }
+            if (stream != null) {
+                stream.flush();
+            }
+
+            parseDescriptors(ivy, ws, ivyFilePaths, modules, onParsed, logger);
+            stopwatch.lap("Parse descriptors");
 
-            List<IvyModuleInfo> infos = new ArrayList<>();
-            List<ModuleDescriptor> sortedModuleDescriptors =
-                    ivy.sortModuleDescriptors(moduleDescriptors.keySet(), SortOptions.DEFAULT);
-            for (ModuleDescriptor moduleDescriptor : sortedModuleDescriptors) {
-                infos.add(new IvyModuleInfo(moduleDescriptor, moduleDescriptors.get(moduleDescriptor)));
+            if (cache != null) {
+                int reused = 0;
+                for (int i = 0; i < modules.length; i++) {
+                    if (cached[i]) {
+                        reused++;
+                    } else if (modules[i] != null) {
+                        cache.put(relativePaths.get(i), new File(ws, ivyFilePaths[i]), modules[i]);
+                    }
+                }
+                cache.retainAll(relativePaths);
+                try {
+                    cache.save(new File(descriptorCache));
+                } catch (IOException e) {
+                    logger.println("Failed to save the Ivy descriptor cache " + descriptorCache);
+                    Functions.printStackTrace(e, logger);
+                }
+                logger.println("Reused " + reused + " of " + modules.length + " cached Ivy descriptors");
+                stopwatch.lap("Write descriptor cache");
+            }
+
+            // keep the order of the scanner, whatever order the descriptors were parsed in
+            List<IvyModuleInfo> discovered = new ArrayList<>();
+            List<Integer> fileIndexes = new ArrayList<>();
+            for (int i = 0; i < infos.length; i++) {
+                if (infos[i] != null) {
+                    discovered.add(infos[i]);
+                    fileIndexes.add(i);
+                }
+            }
+
+            IvyModuleSorter sorter = new IvyModuleSorter(discovered);
+            for (List<IvyModuleInfo> cycle : sorter.getCycles()) {
+                List<ModuleName> names = new ArrayList<>();
+                for (IvyModuleInfo moduleInfo : cycle) {
+                    names.add(moduleInfo.name);
+                }
+                logger.println("Circular dependency between the modules " + StringUtils.join(names, ", "));
+            }
+            stopwatch.lap("Sort modules");
+            if (stream != null) {
+                int[] order = sorter.getOrder();
+                for (int k = 0; k < order.length; k++) {
+                    order[k] = streamIndexes[fileIndexes.get(order[k])];
+                }
+                stream.finish(order);
+                return new IvyModuleInfoList(Collections.emptyList(), stopwatch.getPhases());
             }
 
+            List<IvyModuleInfo> sortedInfos = sorter.getSortedModules();
             if (verbose) {
-                for (IvyModuleInfo moduleInfo : infos) {
+                for (IvyModuleInfo moduleInfo : sortedInfos) {
                     logger.printf(
                             "Discovered module %s at %s.\n",
                             moduleInfo.displayName, moduleInfo.relativePathToDescriptor);
                 }
             }
 
-            return infos;
+            return new IvyModuleInfoList(sortedInfos, stopwatch.getPhases());
         }
 
         /**
-         *
-         * @return the Ivy instance based on the {@link #ivyConfName}
+         * Parses the given descriptors for which {@code modules} has no entry yet, using up
+         * to {@link #parallelism} threads.
+         * <p>
+         * The parsed descriptors are stored in {@code modules} at the index of their file,
+         * files that could not be parsed are left null. {@code onParsed} is called in the
+         * calling thread with the index of each file once it has been parsed, in the order
+         * the files finish parsing.
          */
-        public Ivy getIvy(PrintStream logger) throws AbortException {
-            Message.setDefaultLogger(new IvyMessageImpl());
+        private void parseDescriptors(
+                Ivy ivy,
+                File ws,
+                String[] ivyFilePaths,
+                ModuleDescriptor[] modules,
+                ParseListener onParsed,
+                PrintStream logger)
+                throws Throwable {
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < modules.length; i++) {
+                if (modules[i] == null) {
+                    pending.add(i);
+                }
+            }
+            int threads = Math.min(parallelism, pending.size());
+            if (threads < 2) {
+                for (int i : pending) {
+                    modules[i] = parseDescriptor(ivy, new File(ws, ivyFilePaths[i]), logger);
+                    onParsed.parsed(i);
+                }
+                return;
+            }
+
+            if (verbose) {
+                logger.println("Parsing " + pending.size() + " Ivy descriptors with " + threads + " threads");
+            }
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            ForkJoinPool pool = new ForkJoinPool(
+                    threads,
+                    p -> {
+                        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        t.setContextClassLoader(contextClassLoader);
+                        return t;
+                    },
+                    null,
+                    false);
+            try {
+                // hand over each descriptor as soon as it is parsed, so that a slow one does not
+                // hold back the ones submitted after it
+                CompletionService<Integer> parsed = new ExecutorCompletionService<>(pool);
+                for (int i : pending) {
+                    final int index = i;
+                    final File ivyFile = new File(ws, ivyFilePaths[i]);
+                    parsed.submit(() -> {
+                        modules[index] = parseDescriptor(ivy, ivyFile, logger);
+                        return index;
+                    });
+                }
+                for (int j = 0; j < pending.size(); j++) {
+                    try {
+                        onParsed.parsed(parsed.take().get());
+                    } catch (ExecutionException e) {
+                        throw e.getCause();
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        /**
+         * Notified of each descriptor parsed by {@link #parseDescriptors}.
+         */
+        private interface ParseListener {
+            void parsed(int index) throws IOException;
+        }
+
+        private ModuleDescriptor parseDescriptor(Ivy ivy, final File ivyFile, final PrintStream logger) {
+            return (ModuleDescriptor) ivy.execute(new IvyCallback() {
+                @Override
+                public Object doInIvyContext(Ivy ivy, IvyContext context) {
+                    if (fastParsing) {
+                        try {
+                            ModuleDescriptor module = IvyDescriptorReader.read(ivy.getSettings(), ivyFile);
+                            if (module != null) {
+                                return module;
+                            }
+                        } catch (IOException | XMLStreamException e) {
+                            // let Ivy report the problem
+                        }
+                        if (verbose) {
+                            logger.println("Parsing " + ivyFile + " with the Ivy parser");
+                        }
+                    }
+                    try {
+                        return ModuleDescriptorParserRegistry.getInstance()
+                                .parseDescriptor(
+                                        ivy.getSettings(),
+                                        ivyFile.toURI().toURL(),
+                                        ivy.getSettings().doValidate());
+                    } catch (MalformedURLException e) {
+                        logger.println("The URL is malformed : " + ivyFile);
+                        return null;
+                    } catch (ParseException e) {
+                        logger.println("Parsing error while reading the ivy file " + ivyFile);
+                        return null;
+                    } catch (IOException e) {
+                        logger.println("I/O error while reading the ivy file " + ivyFile);
+                        return null;
+                    }
+                }
+            });
+        }
 
+        /**
+         * @return the settings file to configure Ivy with, or null to use the default settings
+         */
+        private File getSettingsFile() throws AbortException {
             File settingsLoc = (ivySettingsFile == null) ? null : new File(ivySettingsFile);
 
             if ((settingsLoc != null) && (!settingsLoc.exists())) {
                 throw new AbortException(
                         Messages.IvyModuleSetBuild_NoSuchIvySettingsFile(settingsLoc.getAbsolutePath()));
             }
+            return settingsLoc;
+        }
 
-            ArrayList<File> propertyFiles = new ArrayList<>();
+        /**
+         * @return the property files to load into the Ivy settings
+         */
+        private List<File> getPropertyFiles() throws AbortException {
+            List<File> propertyFiles = new ArrayList<>();
             if (StringUtils.isNotBlank(ivySettingsPropertyFiles)) {
                 for (String file : StringUtils.split(ivySettingsPropertyFiles, ',')) {
                     File propertyFile = new File(workspaceProper, file.trim());
@@ -927,8 +1538,30 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
                     propertyFiles.add(propertyFile);
                 }
             }
+            return propertyFiles;
+        }
+
+        /**
+         * Instances are shared through {@link IvyInstanceCache} with other builds of the
+         * job on this node that use the same settings.
+         *
+         * @return the Ivy instance based on the {@link #ivyConfName}, with the fingerprint
+         *      of its settings including the files they include, or null if it cannot be
+         *      configured
+         */
+        IvyInstanceCache.Entry getIvy(
+                File settingsLoc, List<File> propertyFiles, String settingsFingerprint, PrintStream logger) {
+            Message.setDefaultLogger(new IvyMessageImpl());
 
             try {
+                IvyInstanceCache.Entry cached = IvyInstanceCache.get(job, settingsFingerprint);
+                if (cached != null) {
+                    if (verbose) {
+                        logger.println("Reusing Ivy configured from the same settings by an earlier build");
+                    }
+                    return cached;
+                }
+
                 IvySettings ivySettings = new IvySettings();
                 for (File file : propertyFiles) {
                     ivySettings.loadProperties(file);
@@ -947,7 +1580,8 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
                 if (ivyBranch != null) {
                     ivySettings.setDefaultBranch(ivyBranch);
                 }
-                return Ivy.newInstance(ivySettings);
+                Ivy ivy = Ivy.newInstance(ivySettings);
+                return IvyInstanceCache.put(job, new IvyInstanceCache.Entry(ivy, settingsFingerprint, settingsLoc));
             } catch (Exception e) {
                 logger.println("Error while reading the default Ivy 2.1 settings: " + e.getMessage());
                 Functions.printStackTrace(e, logger);
@@ -965,6 +1599,20 @@ public class IvyModuleSetBuild extends AbstractIvyBuild<IvyModuleSet, IvyModuleS
      */
     public static boolean debug = false;
 
+    /**
+     * Finds the Ivy descriptors with Ant's {@link org.apache.tools.ant.DirectoryScanner}
+     * instead of {@link IvyDescriptorScanner}, which does not walk excluded directories.
+     */
+    public static boolean useAntDirectoryScanner =
+            SystemProperties.getBoolean(IvyModuleSetBuild.class.getName() + ".useAntDirectoryScanner");
+
+    /**
+     * Saves the modules reconfigured by module discovery before the build goes on,
+     * rather than in the background.
+     */
+    public static boolean saveModulesInBuildThread =
+            SystemProperties.getBoolean(IvyModuleSetBuild.class.getName() + ".saveModulesInBuildThread");
+
     @Override
     public IvyModuleSet getParent() { // don't know why, but javac wants this
         return super.getParent();
@@ -0,0 +1,283 @@
+package hudson.ivy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts modules so that every module comes after the modules it depends on,
+ * in time linear in the number of modules and dependencies.
+ * <p>
+ * A dependency refers to the modules with the same organisation and name unless
+ * both the dependency and the module have a different static revision, so that
+ * dynamic revisions such as {@code latest.integration}, {@code 1.+} or version
+ * ranges match any revision, like {@link ModuleDependency#UNKNOWN}. Branches are
+ * not taken into account, as with Ivy's own sort.
+ * <p>
+ * Modules that depend on each other in a cycle are kept together in the order
+ * they were given, and reported by {@link #getCycles()}. Modules are emitted
+ * first come, first served as soon as all their dependencies have been, starting
+ * with the modules without dependencies in the order they were given, so the
+ * result only depends on the input order.
+ */
+final class IvyModuleSorter {
+    private final List<IvyModuleInfo> modules;
+
+    /**
+     * Indexes of the modules, in sorted order.
+     */
+    private final int[] order;
+
+    /**
+     * Length of the longest chain of dependencies from each module to a module
+     * without dependencies, by module index. Modules in a cycle share the same depth.
+     */
+    private final int[] depths;
+
+    private final List<List<IvyModuleInfo>> cycles = new ArrayList<>();
+
+    IvyModuleSorter(List<IvyModuleInfo> modules) {
+        this.modules = modules;
+        int n = modules.size();
+
+        // dependencies[i] lists the modules that module i depends on
+        int[][] dependencies = resolveDependencies(modules);
+
+        // strongly connected components, numbered so that a component only depends on
+        // components with a lower number
+        int[] component = new int[n];
+        int componentCount = new Tarjan(dependencies).run(component);
+
+        // members of each component, in input order
+        int[] memberStart = new int[componentCount + 1];
+        for (int i = 0; i < n; i++) {
+            memberStart[component[i] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(memberStart, componentCount);
+        for (int i = 0; i < n; i++) {
+            members[fill[component[i]]++] = i;
+        }
+
+        // edges of the condensation, from a component to the components depending on it
+        int[] pending = new int[componentCount];
+        List<List<Integer>> dependents = new ArrayList<>(componentCount);
+        for (int c = 0; c < componentCount; c++) {
+            dependents.add(new ArrayList<>(2));
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j : dependencies[i]) {
+                int from = component[j];
+                int to = component[i];
+                if (from != to) {
+                    dependents.get(from).add(to);
+                    pending[to]++;
+                }
+            }
+        }
+
+        // Kahn's algorithm, starting from the components in the order of their first member
+        Integer[] byFirstMember = new Integer[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            byFirstMember[c] = c;
+        }
+        Arrays.sort(byFirstMember, (a, b) -> Integer.compare(members[memberStart[a]], members[memberStart[b]]));
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int c : byFirstMember) {
+            if (pending[c] == 0) {
+                ready.add(c);
+            }
+        }
+        int[] componentDepth = new int[componentCount];
+        order = new int[n];
+        depths = new int[n];
+        int next = 0;
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            List<IvyModuleInfo> cycle = null;
+            if (memberStart[c + 1] - memberStart[c] > 1) {
+                cycle = new ArrayList<>();
+                cycles.add(Collections.unmodifiableList(cycle));
+            }
+            for (int k = memberStart[c]; k < memberStart[c + 1]; k++) {
+                order[next++] = members[k];
+                depths[members[k]] = componentDepth[c];
+                if (cycle != null) {
+                    cycle.add(modules.get(members[k]));
+                }
+            }
+            for (int d : dependents.get(c)) {
+                componentDepth[d] = Math.max(componentDepth[d], componentDepth[c] + 1);
+                if (--pending[d] == 0) {
+                    ready.add(d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of the modules in the given list, sorted so that every module
+     * comes after the modules it depends on.
+     */
+    int[] getOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Returns the modules sorted so that every module comes after the modules it
+     * depends on.
+     */
+    List<IvyModuleInfo> getSortedModules() {
+        List<IvyModuleInfo> r = new ArrayList<>(order.length);
+        for (int i : order) {
+            r.add(modules.get(i));
+        }
+        return r;
+    }
+
+    /**
+     * Returns the number of modules on the longest chain of dependencies below the
+     * module at the given index: 0 for a module that depends on no other module.
+     */
+    int getDepth(int index) {
+        return depths[index];
+    }
+
+    /**
+     * Returns the groups of modules that depend on each other, in sorted order.
+     */
+    List<List<IvyModuleInfo>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    private static int[][] resolveDependencies(List<IvyModuleInfo> modules) {
+        Map<ModuleName, List<Integer>> byName = new HashMap<>();
+        for (int i = 0; i < modules.size(); i++) {
+            byName.computeIfAbsent(modules.get(i).name, k -> new ArrayList<>(1)).add(i);
+        }
+
+        int[][] dependencies = new int[modules.size()][];
+        int[] buf = new int[16];
+        for (int i = 0; i < modules.size(); i++) {
+            int count = 0;
+            for (ModuleDependency dep : modules.get(i).dependencies) {
+                List<Integer> candidates = byName.get(dep.getName());
+                if (candidates == null) {
+                    continue;
+                }
+                for (int j : candidates) {
+                    if (j != i && matches(dep.revision, modules.get(j).revision)) {
+                        if (count == buf.length) {
+                            buf = Arrays.copyOf(buf, count * 2);
+                        }
+                        buf[count++] = j;
+                    }
+                }
+            }
+            dependencies[i] = Arrays.copyOf(buf, count);
+        }
+        return dependencies;
+    }
+
+    private static boolean matches(String dependencyRevision, String moduleRevision) {
+        return !isStatic(dependencyRevision)
+                || !isStatic(moduleRevision)
+                || dependencyRevision.equals(moduleRevision);
+    }
+
+    private static boolean isStatic(String revision) {
+        if (revision.isEmpty() || revision.equals(ModuleDependency.UNKNOWN) || revision.endsWith("+")) {
+            return false;
+        }
+        char first = revision.charAt(0);
+        return first != '[' && first != ']' && first != '(';
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, without recursion so that
+     * long dependency chains cannot overflow the stack.
+     */
+    private static final class Tarjan {
+        private final int[][] edges;
+        private final int[] index;
+        private final int[] lowLink;
+        private final boolean[] onStack;
+        private final int[] stack;
+        private int stackSize;
+        private int nextIndex = 1;
+
+        Tarjan(int[][] edges) {
+            this.edges = edges;
+            int n = edges.length;
+            this.index = new int[n];
+            this.lowLink = new int[n];
+            this.onStack = new boolean[n];
+            this.stack = new int[n];
+        }
+
+        /**
+         * Assigns each node its component. Components are numbered in the order they are
+         * completed, so that edges only lead to components with a lower or equal number.
+         *
+         * @return the number of components
+         */
+        int run(int[] component) {
+            int components = 0;
+            int n = edges.length;
+            int[] callStack = new int[n];
+            int[] nextEdge = new int[n];
+            for (int root = 0; root < n; root++) {
+                if (index[root] != 0) {
+                    continue;
+                }
+                int depth = 0;
+                callStack[depth] = root;
+                visit(root);
+                while (depth >= 0) {
+                    int v = callStack[depth];
+                    if (nextEdge[v] < edges[v].length) {
+                        int w = edges[v][nextEdge[v]++];
+                        if (index[w] == 0) {
+                            visit(w);
+                            callStack[++depth] = w;
+                        } else if (onStack[w]) {
+                            lowLink[v] = Math.min(lowLink[v], index[w]);
+                        }
+                        continue;
+                    }
+                    if (lowLink[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            component[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callStack[depth];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+                }
+            }
+            return components;
+        }
+
+        private void visit(int v) {
+            index[v] = nextIndex;
+            lowLink[v] = nextIndex;
+            nextIndex++;
+            stack[stackSize++] = v;
+            onStack[v] = true;
+        }
+    }
+}
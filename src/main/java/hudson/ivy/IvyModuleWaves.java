@@ -0,0 +1,458 @@
+package hudson.ivy;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.AbstractProject;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+import hudson.tasks.BuildTrigger;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules the modules built by a per-module build of an {@link IvyModuleSet} in
+ * dependency waves, when {@link IvyModuleSet#isWaveScheduling()} is set.
+ * <p>
+ * The run is made of the modules the module set build triggers and of the active
+ * modules of the set downstream of them. Each module is queued, without quiet period,
+ * as soon as all its upstream modules of the run have completed successfully, rather
+ * than by {@link AbstractIvyBuild#scheduleDownstreamBuilds} of the last of them; the
+ * modules downstream of a module whose build fails are not built. At most
+ * {@link IvyModuleSet#getMaxConcurrentModuleBuilds()} modules of the run are in the
+ * queue or building at once, if set.
+ * <p>
+ * Modules ready at the same time are queued by decreasing length of the longest chain
+ * of modules of the run they start, weighted by {@link IvyModule#getWeightedDuration()},
+ * so that the modules on the critical path go first.
+ * <p>
+ * Only the queue items the run scheduled, and their builds, count as completing a
+ * module, builds started otherwise are ignored. Runs are kept in memory only: the
+ * modules a run has not queued yet when Jenkins stops are not built.
+ */
+final class IvyModuleWaves {
+    /**
+     * The run in progress of each module set, if any.
+     */
+    private static final Map<IvyModuleSet, IvyModuleWaves> RUNS = new ConcurrentHashMap<>();
+
+    private final IvyModuleSet moduleSet;
+    private final int maxConcurrent;
+
+    /**
+     * The modules of the run, by wave: the modules at the same
+     * {@linkplain IvyModuleSorter#getDepth(int) depth} among the active modules. The
+     * modules of a wave only depend on modules of the previous waves, or on modules of
+     * the same cycle.
+     */
+    private final List<List<IvyModule>> waves = new ArrayList<>();
+
+    /**
+     * The modules of the run downstream of each module of the run.
+     */
+    private final Map<IvyModule, List<IvyModule>> downstream = new HashMap<>();
+
+    /**
+     * The modules waiting for upstream modules, with the number of them that have not
+     * completed yet.
+     */
+    private final Map<IvyModule, Integer> waiting = new HashMap<>();
+
+    /**
+     * The expected duration of each module of the run, in milliseconds.
+     */
+    private final Map<IvyModule, Long> durations = new HashMap<>();
+
+    /**
+     * The expected duration of the longest chain of modules of the run starting with
+     * each module of the run, in milliseconds.
+     */
+    private final Map<IvyModule, Long> remaining = new HashMap<>();
+
+    /**
+     * The longest chain of modules of the run.
+     */
+    private final List<IvyModule> criticalPath = new ArrayList<>();
+
+    /**
+     * The modules waiting for a free slot, in the order they are to be queued.
+     */
+    private final PriorityQueue<IvyModule> ready;
+
+    /**
+     * The build to name as the cause of each module in {@link #ready}.
+     */
+    private final Map<IvyModule, AbstractIvyBuild<?, ?>> readyCauses = new HashMap<>();
+
+    /**
+     * The modules queued or building, with the id of the queue item the run scheduled,
+     * or {@link Run#QUEUE_ID_UNKNOWN} until it is known.
+     */
+    private final Map<IvyModule, Long> released = new HashMap<>();
+
+    /**
+     * @param sortedModules
+     *      the active modules of the module set, upstream modules first
+     * @param triggered
+     *      the modules the module set build triggers
+     */
+    IvyModuleWaves(IvyModuleSet moduleSet, List<IvyModule> sortedModules, Collection<IvyModule> triggered) {
+        this.moduleSet = moduleSet;
+        this.maxConcurrent = moduleSet.getMaxConcurrentModuleBuilds();
+        IvyModuleSorter sorter = new IvyModuleSorter(toModuleInfos(sortedModules));
+        Set<IvyModule> memberSet = new HashSet<>();
+        List<IvyModule> members = new ArrayList<>();
+        Map<Integer, List<IvyModule>> byDepth = new TreeMap<>();
+        for (int i = 0; i < sortedModules.size(); i++) {
+            IvyModule module = sortedModules.get(i);
+            boolean member = triggered.contains(module);
+            int pending = 0;
+            // only upstream modules sorted before count, which breaks cycles
+            for (AbstractProject<?, ?> up : module.getUpstreamProjects()) {
+                if (memberSet.contains(up)) {
+                    member = true;
+                    pending++;
+                    downstream.computeIfAbsent((IvyModule) up, k -> new ArrayList<>()).add(module);
+                }
+            }
+            if (member) {
+                memberSet.add(module);
+                members.add(module);
+                waiting.put(module, pending);
+                byDepth.computeIfAbsent(sorter.getDepth(i), k -> new ArrayList<>()).add(module);
+            }
+        }
+        waves.addAll(byDepth.values());
+
+        // modules that were never built are expected to take as long as the others
+        long total = 0;
+        int known = 0;
+        for (IvyModule module : members) {
+            long duration = module.getWeightedDuration();
+            if (duration >= 0) {
+                durations.put(module, duration);
+                total += duration;
+                known++;
+            }
+        }
+        long unknown = known == 0 ? 1 : Math.max(1, total / known);
+        for (IvyModule module : members) {
+            durations.putIfAbsent(module, unknown);
+        }
+
+        // downstream modules come later in the sorted modules
+        for (int i = members.size() - 1; i >= 0; i--) {
+            IvyModule module = members.get(i);
+            remaining.put(module, durations.get(module) + remaining(longestDownstream(module)));
+        }
+        IvyModule first = null;
+        for (IvyModule module : members) {
+            if (waiting.get(module) == 0 && remaining(module) > remaining(first)) {
+                first = module;
+            }
+        }
+        for (IvyModule module = first; module != null; module = longestDownstream(module)) {
+            criticalPath.add(module);
+        }
+
+        Map<IvyModule, Integer> order = new HashMap<>();
+        for (IvyModule module : members) {
+            order.put(module, order.size());
+        }
+        ready = new PriorityQueue<>(
+                Math.max(1, members.size()),
+                Comparator.<IvyModule>comparingLong(this::remaining).reversed().thenComparingInt(order::get));
+    }
+
+    /**
+     * Describes the given modules to {@link IvyModuleSorter}, with their upstream
+     * modules among them as their only dependencies, so that the sorter sees the same
+     * dependencies as the dependency graph.
+     */
+    private static List<IvyModuleInfo> toModuleInfos(List<IvyModule> modules) {
+        Set<IvyModule> known = new HashSet<>(modules);
+        List<IvyModuleInfo> infos = new ArrayList<>(modules.size());
+        for (IvyModule module : modules) {
+            List<ModuleDependency> dependencies = new ArrayList<>();
+            for (AbstractProject<?, ?> up : module.getUpstreamProjects()) {
+                if (known.contains(up)) {
+                    dependencies.add(((IvyModule) up).asDependency());
+                }
+            }
+            infos.add(new IvyModuleInfo(
+                    module.getModuleName(),
+                    module.getDisplayName(),
+                    module.getRelativePath(),
+                    module.asDependency().revision,
+                    ModuleDependency.UNKNOWN,
+                    dependencies));
+        }
+        return infos;
+    }
+
+    private long remaining(IvyModule module) {
+        return module == null ? 0 : remaining.get(module);
+    }
+
+    /**
+     * Returns the module of the run downstream of the given one that starts the longest
+     * chain, or null if there is none.
+     */
+    private IvyModule longestDownstream(IvyModule module) {
+        IvyModule longest = null;
+        for (IvyModule down : downstream.getOrDefault(module, Collections.emptyList())) {
+            if (remaining(down) > remaining(longest)) {
+                longest = down;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Starts a run for the given module set build, replacing the run in progress for
+     * its module set if any.
+     */
+    static void start(
+            IvyModuleSetBuild build,
+            List<IvyModule> sortedModules,
+            Collection<IvyModule> triggered,
+            PrintStream logger) {
+        IvyModuleWaves run = new IvyModuleWaves(build.getProject(), sortedModules, triggered);
+        for (int i = 0; i < run.waves.size(); i++) {
+            logger.println("Wave " + (i + 1) + ": " + run.waves.get(i).size() + " modules");
+        }
+        if (!run.criticalPath.isEmpty()) {
+            IvyCriticalPathAction criticalPath = new IvyCriticalPathAction(run.criticalPath, run.durations);
+            logger.println("Critical path: " + criticalPath.getModules().size() + " modules, estimated at "
+                    + criticalPath.getTotalDurationString());
+            build.addAction(criticalPath);
+        }
+        RUNS.put(build.getProject(), run);
+        run.schedule(run.start(build));
+    }
+
+    /**
+     * Returns true if the given module waits to be queued by the run of its module set.
+     */
+    static boolean isScheduled(IvyModule module) {
+        IvyModuleWaves run = RUNS.get(module.getParent());
+        return run != null && run.isWaiting(module);
+    }
+
+    List<List<IvyModule>> getWaves() {
+        return waves;
+    }
+
+    List<IvyModule> getCriticalPath() {
+        return criticalPath;
+    }
+
+    synchronized boolean isWaiting(IvyModule module) {
+        return waiting.containsKey(module) || readyCauses.containsKey(module);
+    }
+
+    synchronized boolean isDone() {
+        return waiting.isEmpty() && ready.isEmpty() && released.isEmpty();
+    }
+
+    /**
+     * Returns the modules without upstream modules in the run that can be queued, by
+     * the build to name as their cause.
+     */
+    synchronized Map<AbstractIvyBuild<?, ?>, List<IvyModule>> start(AbstractIvyBuild<?, ?> build) {
+        for (Iterator<Map.Entry<IvyModule, Integer>> it = waiting.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<IvyModule, Integer> e = it.next();
+            if (e.getValue() == 0) {
+                makeReady(e.getKey(), build);
+                it.remove();
+            }
+        }
+        return release();
+    }
+
+    /**
+     * Records the queue item scheduled for the given module, released by this run.
+     */
+    synchronized void queued(IvyModule module, long queueId) {
+        released.replace(module, queueId);
+    }
+
+    /**
+     * Records that the given module, queued by this run, completed, and returns the
+     * modules that can be queued as a result, by the build to name as their cause.
+     *
+     * @param queueId
+     *      the id of the queue item that completed, ignored unless it is the one the
+     *      run scheduled
+     * @param build
+     *      the build of the module, or null if it was taken out of the queue
+     * @param success
+     *      whether the build succeeded well enough to trigger downstream builds
+     */
+    synchronized Map<AbstractIvyBuild<?, ?>, List<IvyModule>> completed(
+            IvyModule module, long queueId, AbstractIvyBuild<?, ?> build, boolean success) {
+        Long scheduled = released.get(module);
+        if (scheduled == null || scheduled != queueId) {
+            return Collections.emptyMap();
+        }
+        released.remove(module);
+        for (IvyModule down : downstream.getOrDefault(module, Collections.emptyList())) {
+            if (!success) {
+                drop(down);
+                continue;
+            }
+            Integer pending = waiting.get(down);
+            if (pending == null) {
+                continue;
+            }
+            if (pending == 1) {
+                waiting.remove(down);
+                makeReady(down, build);
+            } else {
+                waiting.put(down, pending - 1);
+            }
+        }
+        return release();
+    }
+
+    /**
+     * Removes the given module and the modules downstream of it from the run.
+     */
+    private void drop(IvyModule module) {
+        Deque<IvyModule> stack = new ArrayDeque<>();
+        stack.push(module);
+        while (!stack.isEmpty()) {
+            IvyModule m = stack.pop();
+            if (waiting.remove(m) != null) {
+                stack.addAll(downstream.getOrDefault(m, Collections.emptyList()));
+            }
+        }
+    }
+
+    private void makeReady(IvyModule module, AbstractIvyBuild<?, ?> cause) {
+        readyCauses.put(module, cause);
+        ready.add(module);
+    }
+
+    private Map<AbstractIvyBuild<?, ?>, List<IvyModule>> release() {
+        Map<AbstractIvyBuild<?, ?>, List<IvyModule>> r = new LinkedHashMap<>();
+        while (!ready.isEmpty() && (maxConcurrent <= 0 || released.size() < maxConcurrent)) {
+            IvyModule module = ready.poll();
+            released.put(module, Run.QUEUE_ID_UNKNOWN);
+            r.computeIfAbsent(readyCauses.remove(module), k -> new ArrayList<>()).add(module);
+        }
+        return r;
+    }
+
+    /**
+     * Queues the given modules, and forgets about this run once it is done.
+     * <p>
+     * Must not be called while holding the lock of this run, as queuing takes the queue
+     * lock, and the queue calls back into this run while holding it.
+     */
+    private void schedule(Map<AbstractIvyBuild<?, ?>, List<IvyModule>> modules) {
+        while (!modules.isEmpty()) {
+            // modules that cannot be queued, such as disabled ones, count as failed
+            List<IvyModule> notQueued = new ArrayList<>();
+            Map<AbstractIvyBuild<?, ?>, List<IvyModule>> toQueue = modules;
+            Queue.withLock(() -> toQueue.forEach((cause, m) -> {
+                cause.scheduleBuilds(m, 0);
+                for (IvyModule module : m) {
+                    Queue.Item item = module.getQueueItem();
+                    if (item == null) {
+                        notQueued.add(module);
+                    } else {
+                        queued(module, item.getId());
+                    }
+                }
+            }));
+            Map<AbstractIvyBuild<?, ?>, List<IvyModule>> next = new LinkedHashMap<>();
+            for (IvyModule module : notQueued) {
+                completed(module, Run.QUEUE_ID_UNKNOWN, null, false)
+                        .forEach((cause, m) -> next.computeIfAbsent(cause, k -> new ArrayList<>())
+                                .addAll(m));
+            }
+            modules = next;
+        }
+        if (isDone()) {
+            RUNS.remove(moduleSet, this);
+        }
+    }
+
+    /**
+     * Returns the number of modules of the run that have not been queued yet.
+     */
+    synchronized int getPendingCount() {
+        return waiting.size() + ready.size();
+    }
+
+    /**
+     * Logs the runs that will not complete, as they are not kept across restarts.
+     */
+    @Terminator
+    public static void abandonRuns() {
+        RUNS.forEach((moduleSet, run) -> {
+            int pending = run.getPendingCount();
+            if (pending > 0) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Abandoning the wave scheduling of {0}: {1} modules not queued yet will not be built",
+                        new Object[] {moduleSet.getFullName(), pending});
+            }
+        });
+    }
+
+    private static boolean isSuccess(IvyBuild build) {
+        BuildTrigger bt = build.getParent().getPublishersList().get(BuildTrigger.class);
+        Result result = build.getResult();
+        return result != null && !result.isWorseThan(bt != null ? bt.getThreshold() : Result.SUCCESS);
+    }
+
+    @Extension
+    public static final class BuildListener extends RunListener<IvyBuild> {
+        @Override
+        public void onCompleted(IvyBuild build, TaskListener listener) {
+            build.getParent().recordDuration(build);
+            IvyModuleWaves run = RUNS.get(build.getParent().getParent());
+            if (run != null) {
+                run.schedule(run.completed(build.getParent(), build.getQueueId(), build, isSuccess(build)));
+            }
+        }
+    }
+
+    @Extension
+    public static final class CancelListener extends QueueListener {
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (li.isCancelled() && li.task instanceof IvyModule) {
+                IvyModule module = (IvyModule) li.task;
+                IvyModuleWaves run = RUNS.get(module.getParent());
+                if (run != null) {
+                    run.schedule(run.completed(module, li.getId(), null, false));
+                }
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(IvyModuleWaves.class.getName());
+}
@@ -0,0 +1,122 @@
+package hudson.ivy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.ivy.core.settings.IvySettings;
+
+/**
+ * Finds the files an Ivy settings file pulls in with {@code <include>} and
+ * {@code <properties>}, so that they can be fingerprinted along with it.
+ * <p>
+ * Paths are resolved the way Ivy resolves them: with the variables of the loaded
+ * settings, relative to the file that includes them, and with {@code ivy.settings.dir}
+ * pointing to the directory of that file. Includes by URL are only followed for
+ * {@code file:} URLs, remote settings cannot be checked for changes.
+ */
+final class IvySettingsIncludes {
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private IvySettingsIncludes() {}
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Lists the files included by the given settings file, directly or through other
+     * included files, in the order they are found. Files that do not exist or cannot
+     * be read are listed, but not searched for further includes.
+     *
+     * @param settings
+     *      the settings loaded from {@code settingsFile}, to resolve variables with.
+     */
+    static List<File> find(File settingsFile, IvySettings settings) {
+        Set<File> files = new LinkedHashSet<>();
+        collect(settingsFile.getAbsoluteFile(), settings, files);
+        return new ArrayList<>(files);
+    }
+
+    private static void collect(File settingsFile, IvySettings settings, Set<File> files) {
+        List<File> includes = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(settingsFile.toPath())) {
+            XMLStreamReader xml;
+            synchronized (FACTORY) {
+                xml = FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String element = xml.getLocalName();
+                    if (element.equals("include") || element.equals("properties")) {
+                        File file = resolve(settingsFile, settings, xml);
+                        if (file != null && files.add(file) && element.equals("include")) {
+                            includes.add(file);
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            return; // Ivy could not have read more of it either
+        }
+        for (File include : includes) {
+            collect(include, settings, files);
+        }
+    }
+
+    private static File resolve(File settingsFile, IvySettings settings, XMLStreamReader xml) {
+        String path = xml.getAttributeValue(null, "file");
+        if (path != null) {
+            path = substitute(settingsFile, settings, path);
+            if (path.contains("${")) {
+                return null;
+            }
+            File file = new File(path);
+            if (!file.isAbsolute()) {
+                file = new File(settingsFile.getParentFile(), path);
+            }
+            return file.toPath().normalize().toFile();
+        }
+        String url = xml.getAttributeValue(null, "url");
+        if (url != null) {
+            url = substitute(settingsFile, settings, url);
+            if (url.startsWith("file:")) {
+                try {
+                    return new File(new URI(url)).toPath().normalize().toFile();
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * While Ivy reads an included file, the {@code ivy.settings.*} variables describe
+     * that file rather than the top-level settings file.
+     */
+    private static String substitute(File settingsFile, IvySettings settings, String value) {
+        value = value.replace("${ivy.settings.dir}", settingsFile.getParent())
+                .replace("${ivy.settings.file}", settingsFile.getPath())
+                .replace("${ivy.settings.url}", settingsFile.toURI().toString());
+        return settings.substitute(value);
+    }
+}
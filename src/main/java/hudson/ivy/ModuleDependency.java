@@ -23,6 +23,8 @@
  */
 package hudson.ivy;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.io.Serializable;
 import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
@@ -39,6 +41,16 @@ public final class ModuleDependency implements Serializable {
     public final String revision;
     public final String branch;
 
+    /**
+     * Cached {@link #hashCode()}, 0 until computed.
+     */
+    private transient int hash;
+
+    /**
+     * Cached {@link #withUnknownRevision()} of this instance, once it was requested.
+     */
+    private transient ModuleDependency unknownRevision;
+
     public ModuleDependency(String organisation, String name, String revision, String branch) {
         this.organisation = organisation;
         this.name = name;
@@ -72,21 +84,28 @@ public final class ModuleDependency implements Serializable {
     }
 
     public ModuleName getName() {
-        return new ModuleName(organisation, name);
+        return new ModuleName(organisation, name).intern();
     }
 
     /**
      * Returns organisation+name+branch with unknown revision.
      */
     public ModuleDependency withUnknownRevision() {
-        return new ModuleDependency(organisation, name, UNKNOWN, branch);
+        ModuleDependency r = unknownRevision;
+        if (r == null) {
+            r = revision.equals(UNKNOWN)
+                    ? this
+                    : new ModuleDependency(organisation, name, UNKNOWN, branch).intern();
+            unknownRevision = r;
+        }
+        return r;
     }
 
     /**
      * Returns organisation+name with unknown revision and branch.
      */
     public ModuleDependency withUnknownRevisionAndBranch() {
-        return new ModuleDependency(organisation, name, UNKNOWN, UNKNOWN);
+        return new ModuleDependency(organisation, name, UNKNOWN, UNKNOWN).intern();
     }
 
     @Override
@@ -108,14 +127,32 @@ public final class ModuleDependency implements Serializable {
 
     @Override
     public int hashCode() {
-        int result;
-        result = organisation.hashCode();
-        result = 31 * result + name.hashCode();
-        result = 31 * result + revision.hashCode();
-        result = 31 * result + branch.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = organisation.hashCode();
+            result = 31 * result + name.hashCode();
+            result = 31 * result + revision.hashCode();
+            result = 31 * result + branch.hashCode();
+            hash = result;
+        }
         return result;
     }
 
+    /**
+     * Returns the canonical instance equal to this one, so that equal dependencies
+     * share one instance, its cached hash code and {@link #withUnknownRevision()}, and
+     * usually compare by identity. Unused instances are garbage collected.
+     */
+    public ModuleDependency intern() {
+        return INTERNER.intern(this);
+    }
+
+    private Object readResolve() {
+        return intern();
+    }
+
+    private static final Interner<ModuleDependency> INTERNER = Interners.newWeakInterner();
+
     /**
      * For compatibility reason, this value may be used in the revision and
      * branch fields to indicate that they are unknown.
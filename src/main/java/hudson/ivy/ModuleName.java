@@ -23,6 +23,8 @@
  */
 package hudson.ivy;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.io.Serializable;
 import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
@@ -37,6 +39,11 @@ public class ModuleName implements Comparable<ModuleName>, Serializable {
     public final String organisation;
     public final String name;
 
+    /**
+     * Cached {@link #hashCode()}, 0 until computed.
+     */
+    private transient int hash;
+
     public ModuleName(String organisation, String name) {
         this.organisation = organisation;
         this.name = name;
@@ -73,7 +80,7 @@ public class ModuleName implements Comparable<ModuleName>, Serializable {
         if (idx < 0) {
             throw new IllegalArgumentException(n);
         }
-        return new ModuleName(n.substring(0, idx), n.substring(idx + 1));
+        return new ModuleName(n.substring(0, idx), n.substring(idx + 1)).intern();
     }
 
     public static ModuleName fromString(String n) {
@@ -81,7 +88,7 @@ public class ModuleName implements Comparable<ModuleName>, Serializable {
         if (idx < 0) {
             throw new IllegalArgumentException(n);
         }
-        return new ModuleName(n.substring(0, idx), n.substring(idx + 1));
+        return new ModuleName(n.substring(0, idx), n.substring(idx + 1)).intern();
     }
 
     /**
@@ -108,12 +115,27 @@ public class ModuleName implements Comparable<ModuleName>, Serializable {
 
     @Override
     public int hashCode() {
-        int result;
-        result = organisation.hashCode();
-        result = 31 * result + name.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = organisation.hashCode();
+            result = 31 * result + name.hashCode();
+            hash = result;
+        }
         return result;
     }
 
+    /**
+     * Returns the canonical instance equal to this one, so that equal names share one
+     * instance and its cached hash code. Unused instances are garbage collected.
+     */
+    public ModuleName intern() {
+        return INTERNER.intern(this);
+    }
+
+    private Object readResolve() {
+        return intern();
+    }
+
     @Override
     public int compareTo(ModuleName that) {
         int r = this.organisation.compareTo(that.organisation);
@@ -123,5 +145,7 @@ public class ModuleName implements Comparable<ModuleName>, Serializable {
         return this.name.compareTo(that.name);
     }
 
+    private static final Interner<ModuleName> INTERNER = Interners.newWeakInterner();
+
     private static final long serialVersionUID = 1L;
 }
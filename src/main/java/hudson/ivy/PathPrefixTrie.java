@@ -0,0 +1,76 @@
+package hudson.ivy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Values stored under string keys, looked up by all the keys that are a prefix of a
+ * given string, in a single walk over its characters.
+ * <p>
+ * Keys are compared character by character, like {@link String#startsWith}, so
+ * {@code "core"} is a prefix of {@code "core-api/ivy.xml"} as well as of
+ * {@code "core/ivy.xml"}.
+ */
+final class PathPrefixTrie<T> {
+    private final Node<T> root = new Node<>();
+
+    void put(String key, T value) {
+        Node<T> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i), true);
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Adds the values stored under every prefix of the given string, shortest prefix
+     * first, to the given collection.
+     */
+    void collectPrefixesOf(String s, Collection<? super T> into) {
+        Node<T> node = root;
+        into.addAll(node.values);
+        for (int i = 0; i < s.length(); i++) {
+            node = node.child(s.charAt(i), false);
+            if (node == null) {
+                return;
+            }
+            into.addAll(node.values);
+        }
+    }
+
+    private static final class Node<T> {
+        private final List<T> values = new ArrayList<>(0);
+
+        /**
+         * Children by character, in the order they were added; most nodes of a path
+         * have a single child.
+         */
+        private char[] keys = new char[0];
+
+        private Node<T>[] children = newArray(0);
+
+        Node<T> child(char c, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            Node<T> child = new Node<>();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            keys[keys.length - 1] = c;
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int size) {
+            return (Node<T>[]) new Node<?>[size];
+        }
+    }
+}
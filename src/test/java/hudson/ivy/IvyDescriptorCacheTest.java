@@ -0,0 +1,153 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IvyDescriptorCacheTest {
+
+    private static final String SETTINGS = "settings";
+
+    @TempDir
+    Path workspace;
+
+    private File descriptor;
+
+    private File cacheFile;
+
+    @BeforeEach
+    void createWorkspace() throws Exception {
+        descriptor = workspace.resolve("core/ivy.xml").toFile();
+        Files.createDirectories(descriptor.toPath().getParent());
+        writeDescriptor("1.0");
+        cacheFile = workspace.resolve("tmp").resolve(IvyDescriptorCache.FILE_NAME).toFile();
+    }
+
+    @Test
+    void should_reuse_unchanged_descriptors() throws Exception {
+        saveCache();
+
+        ModuleDescriptor cached = IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor);
+
+        assertThat(cached, notNullValue());
+        assertThat(cached.getModuleRevisionId(), equalTo(module("1.0").getModuleRevisionId()));
+        assertThat(
+                cached.getDependencies()[0].getDependencyRevisionId(),
+                equalTo(ModuleRevisionId.newInstance("org.example", "api", "latest.integration")));
+        assertThat(IvyDescriptorCache.load(cacheFile, SETTINGS).get("api/ivy.xml", descriptor), nullValue());
+    }
+
+    @Test
+    void should_reuse_descriptors_touched_without_changes() throws Exception {
+        saveCache();
+        descriptor.setLastModified(descriptor.lastModified() + 60_000);
+
+        assertThat(IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor), notNullValue());
+    }
+
+    @Test
+    void should_parse_descriptors_again_when_their_version_changed() throws Exception {
+        saveCache();
+        long lastModified = descriptor.lastModified();
+        // same size, only the content tells
+        writeDescriptor("1.1");
+        descriptor.setLastModified(lastModified + 60_000);
+
+        assertThat(IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor), nullValue());
+    }
+
+    @Test
+    void should_discard_the_cache_when_the_settings_changed() throws Exception {
+        Path settings = workspace.resolve("ivysettings.xml");
+        Path included = workspace.resolve("resolvers.xml");
+        Files.writeString(settings, "<ivysettings><include file='resolvers.xml'/></ivysettings>");
+        Files.writeString(included, "<ivysettings/>");
+        List<File> includedFiles = Collections.singletonList(included.toFile());
+        String fingerprint = IvyDescriptorCache.fingerprint(
+                IvyDescriptorCache.fingerprint(settings.toFile(), Collections.emptyList(), null), includedFiles);
+        saveCache(fingerprint);
+
+        Files.writeString(included, "<ivysettings><property name='x' value='y'/></ivysettings>");
+        String changed = IvyDescriptorCache.fingerprint(
+                IvyDescriptorCache.fingerprint(settings.toFile(), Collections.emptyList(), null), includedFiles);
+
+        assertThat(changed, not(equalTo(fingerprint)));
+        assertThat(IvyDescriptorCache.load(cacheFile, changed).get("core/ivy.xml", descriptor), nullValue());
+    }
+
+    @Test
+    void should_discard_a_cache_of_another_format() throws Exception {
+        saveCache();
+        byte[] data = Files.readAllBytes(cacheFile.toPath());
+        data[3]++;
+        Files.write(cacheFile.toPath(), data);
+
+        assertThat(IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor), nullValue());
+    }
+
+    @Test
+    void should_discard_truncated_or_corrupted_caches() throws Exception {
+        saveCache();
+        byte[] data = Files.readAllBytes(cacheFile.toPath());
+
+        for (int length = 0; length < data.length; length++) {
+            Files.write(cacheFile.toPath(), Arrays.copyOf(data, length));
+            assertThat(IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor), nullValue());
+        }
+        for (int i = 0; i < data.length; i++) {
+            byte[] corrupted = data.clone();
+            corrupted[i] = (byte) 0xff;
+            Files.write(cacheFile.toPath(), corrupted);
+            // must not throw, whatever is left of the entry
+            IvyDescriptorCache.load(cacheFile, SETTINGS).get("core/ivy.xml", descriptor);
+        }
+    }
+
+    private void saveCache() throws Exception {
+        saveCache(SETTINGS);
+    }
+
+    private void saveCache(String fingerprint) throws Exception {
+        // old enough to be trusted by its size and timestamp
+        descriptor.setLastModified(System.currentTimeMillis() - 3_600_000);
+        IvyDescriptorCache cache = IvyDescriptorCache.load(cacheFile, fingerprint);
+        assertThat(cache.get("core/ivy.xml", descriptor), nullValue());
+        cache.put("core/ivy.xml", descriptor, module("1.0"));
+        cache.save(cacheFile);
+    }
+
+    private void writeDescriptor(String revision) throws Exception {
+        Files.writeString(
+                descriptor.toPath(),
+                "<ivy-module version='2.0'><info organisation='org.example' module='core' revision='" + revision
+                        + "'/></ivy-module>");
+    }
+
+    private static ModuleDescriptor module(String revision) {
+        DefaultModuleDescriptor module = new DefaultModuleDescriptor(
+                ModuleRevisionId.newInstance("org.example", "core", revision), "integration", null);
+        module.addDependency(new DefaultDependencyDescriptor(
+                module,
+                ModuleRevisionId.newInstance("org.example", "api", "latest.integration"),
+                false,
+                false,
+                true));
+        return module;
+    }
+}
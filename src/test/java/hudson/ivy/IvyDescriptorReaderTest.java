@@ -0,0 +1,150 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.plugins.parser.xml.XmlModuleDescriptorParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IvyDescriptorReaderTest {
+
+    @TempDir
+    Path workspace;
+
+    private Ivy ivy;
+
+    @BeforeEach
+    void createIvy() throws Exception {
+        ivy = Ivy.newInstance();
+        ivy.configureDefault();
+        ivy.getSettings().setVariable("api.rev", "1.2");
+        ivy.getSettings().setDefaultBranch("trunk");
+
+        Files.createDirectories(workspace.resolve("parent"));
+        Files.writeString(
+                workspace.resolve("parent/ivy.xml"),
+                "<ivy-module version='2.0'><info organisation='org.example' module='parent' revision='3.0'/>"
+                        + "<dependencies><dependency name='base' rev='1.0'/></dependencies></ivy-module>");
+        Files.writeString(
+                workspace.resolve("configurations.xml"), "<configurations><conf name='default'/></configurations>");
+    }
+
+    @Test
+    void should_read_plain_descriptors_like_ivy() throws Exception {
+        assertSameAsIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='1.0' status='integration'"
+                + " publication='20200101000000'/>"
+                + "<dependencies>"
+                + "<dependency org='org.example' name='api' rev='latest.integration' conf='default'"
+                + " transitive='false'/>"
+                + "<dependency name='util' rev='1.0' changing='true' force='true'/>"
+                + "</dependencies></ivy-module>");
+    }
+
+    @Test
+    void should_read_variables_and_branches_like_ivy() throws Exception {
+        assertSameAsIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' branch='feature' revision='${api.rev}'/>"
+                + "<dependencies>"
+                + "<dependency name='api' branch='main' rev='${api.rev}' revConstraint='[1.0,2.0['/>"
+                + "<dependency name='util'/>"
+                + "</dependencies></ivy-module>");
+    }
+
+    @Test
+    void should_leave_unresolved_variables_to_ivy() throws Exception {
+        assertLeftToIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='${undefined.rev}'/></ivy-module>");
+    }
+
+    @Test
+    void should_leave_extends_and_includes_to_ivy() throws Exception {
+        assertLeftToIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='1.0'>"
+                + "<extends organisation='org.example' module='parent' revision='3.0' location='parent/ivy.xml'/>"
+                + "</info></ivy-module>");
+        assertLeftToIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='1.0'/>"
+                + "<configurations><include file='configurations.xml'/></configurations>"
+                + "<dependencies><dependency name='api' rev='1.0'/></dependencies></ivy-module>");
+    }
+
+    @Test
+    void should_leave_extra_attributes_to_ivy() throws Exception {
+        assertLeftToIvy("<ivy-module version='2.0' xmlns:e='http://ant.apache.org/ivy/extra'>"
+                + "<info organisation='org.example' module='core' revision='1.0' e:flavour='x'/>"
+                + "<dependencies><dependency name='api' rev='1.0' e:flavour='y'/></dependencies></ivy-module>");
+        // Ivy takes attributes without a namespace as extra attributes too
+        assertLeftToIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='1.0' flavour='x'/>"
+                + "<dependencies><dependency name='api' rev='1.0'/></dependencies></ivy-module>");
+        assertLeftToIvy("<ivy-module version='2.0'>"
+                + "<info organisation='org.example' module='core' revision='1.0'/>"
+                + "<dependencies><dependency name='api' rev='1.0' flavour='y'/></dependencies></ivy-module>");
+    }
+
+    private void assertSameAsIvy(String descriptor) throws Exception {
+        File file = write(descriptor);
+        List<Object> expected = describe(parse(file));
+        assertThat(describe(read(file)), equalTo(expected));
+    }
+
+    private void assertLeftToIvy(String descriptor) throws Exception {
+        File file = write(descriptor);
+        // Ivy must still be able to parse it
+        parse(file);
+        assertThat(read(file), nullValue());
+    }
+
+    private File write(String descriptor) throws Exception {
+        Path file = workspace.resolve("ivy.xml");
+        Files.writeString(file, descriptor);
+        return file.toFile();
+    }
+
+    private ModuleDescriptor parse(File file) {
+        return (ModuleDescriptor) ivy.execute((instance, context) -> {
+            try {
+                return XmlModuleDescriptorParser.getInstance()
+                        .parseDescriptor(instance.getSettings(), file.toURI().toURL(), false);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    private ModuleDescriptor read(File file) {
+        return (ModuleDescriptor) ivy.execute((instance, context) -> {
+            try {
+                return IvyDescriptorReader.read(instance.getSettings(), file);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    /**
+     * The revision ids module discovery uses, with their extra attributes.
+     */
+    private static List<Object> describe(ModuleDescriptor module) {
+        List<Object> r = new ArrayList<>();
+        r.add(module.getModuleRevisionId());
+        r.add(module.getModuleRevisionId().getQualifiedExtraAttributes());
+        for (DependencyDescriptor dependency : module.getDependencies()) {
+            r.add(dependency.getDependencyRevisionId());
+            r.add(dependency.getDependencyRevisionId().getQualifiedExtraAttributes());
+        }
+        return r;
+    }
+}
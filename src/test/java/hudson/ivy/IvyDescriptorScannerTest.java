@@ -0,0 +1,78 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+
+import hudson.Util;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IvyDescriptorScannerTest {
+
+    @TempDir
+    Path workspace;
+
+    @BeforeEach
+    void createWorkspace() throws Exception {
+        for (String path : new String[] {
+            "ivy.xml",
+            "a/ivy.xml",
+            "a/b/ivy.xml",
+            "a/b/ivy-test.xml",
+            "build/ivy.xml",
+            "build/sub/ivy.xml",
+            "x/build/ivy.xml",
+            "node_modules/x/ivy.xml",
+            "c/node_modules/y/ivy.xml",
+            ".git/ivy.xml",
+            "c/.svn/z/ivy.xml",
+            "c/d/e/f/ivy.xml",
+            "c/ivy.xml~"
+        }) {
+            Path file = workspace.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "<ivy-module/>");
+        }
+    }
+
+    @Test
+    void should_find_the_same_files_as_ant() throws Exception {
+        String[][] patterns = {
+            {"**/ivy.xml", null},
+            {"**/ivy*.xml", ""},
+            {"**/ivy.xml", "**/node_modules/**, build/"},
+            {"**/ivy.xml", "build,**/d/**/*"},
+            {"a/**/ivy*.xml, c/**", null},
+            {"*/ivy.xml", "**/build/**"},
+            {"ivy.xml", null},
+            {"**/b/", null}
+        };
+        for (String[] p : patterns) {
+            String[] expected = Util.createFileSet(workspace.toFile(), p[0], p[1])
+                    .getDirectoryScanner()
+                    .getIncludedFiles();
+            for (int parallelism : new int[] {1, 4}) {
+                assertThat(
+                        p[0] + " excluding " + p[1],
+                        new IvyDescriptorScanner(p[0], p[1]).scan(workspace.toFile(), parallelism),
+                        equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    void should_skip_excluded_directories() throws Exception {
+        String[] found = new IvyDescriptorScanner("**/ivy.xml", "**/node_modules/**,build/,c/")
+                .scan(workspace.toFile(), 1);
+        assertThat(found, arrayContaining(path("a/b/ivy.xml"), path("a/ivy.xml"), "ivy.xml", path("x/build/ivy.xml")));
+    }
+
+    private static String path(String p) {
+        return p.replace('/', File.separatorChar);
+    }
+}
@@ -0,0 +1,81 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.settings.IvySettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IvyInstanceCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private File settingsFile;
+
+    @BeforeEach
+    void createSettings() throws Exception {
+        Files.createDirectories(dir.resolve("sub"));
+        Files.writeString(
+                dir.resolve("ivysettings.xml"),
+                "<ivysettings><properties file='sub/branch.properties'/>"
+                        + "<include file='${ivy.settings.dir}/sub/resolvers.xml'/></ivysettings>");
+        Files.writeString(dir.resolve("sub/branch.properties"), "branch=trunk\n");
+        Files.writeString(
+                dir.resolve("sub/resolvers.xml"),
+                "<ivysettings><properties file='resolvers.properties'/></ivysettings>");
+        Files.writeString(dir.resolve("sub/resolvers.properties"), "resolver=local\n");
+        settingsFile = dir.resolve("ivysettings.xml").toFile();
+    }
+
+    @Test
+    void should_find_the_files_included_by_the_settings() throws Exception {
+        assertThat(
+                IvySettingsIncludes.find(settingsFile, load().getSettings()),
+                contains(
+                        dir.resolve("sub/branch.properties").toFile(),
+                        dir.resolve("sub/resolvers.xml").toFile(),
+                        dir.resolve("sub/resolvers.properties").toFile()));
+    }
+
+    @Test
+    void should_reuse_an_instance_until_an_included_file_changes() throws Exception {
+        String settingsFingerprint = IvyDescriptorCache.fingerprint(settingsFile, Collections.emptyList(), null);
+        IvyInstanceCache.Entry entry =
+                IvyInstanceCache.put("job", new IvyInstanceCache.Entry(load(), settingsFingerprint, settingsFile));
+        assertThat(entry.fingerprint, not(equalTo(settingsFingerprint)));
+        assertThat(IvyInstanceCache.get("job", settingsFingerprint), sameInstance(entry));
+        assertThat(IvyInstanceCache.get("other-job", settingsFingerprint), nullValue());
+
+        // a file included by an included file
+        Files.writeString(dir.resolve("sub/resolvers.properties"), "resolver=remote\n");
+
+        // the settings file itself is unchanged, so is its own fingerprint
+        assertThat(
+                IvyDescriptorCache.fingerprint(settingsFile, Collections.emptyList(), null),
+                equalTo(settingsFingerprint));
+        assertThat(IvyInstanceCache.get("job", settingsFingerprint), nullValue());
+
+        IvyInstanceCache.Entry reloaded =
+                IvyInstanceCache.put("job", new IvyInstanceCache.Entry(load(), settingsFingerprint, settingsFile));
+        assertThat(reloaded.fingerprint, not(equalTo(entry.fingerprint)));
+        assertThat(IvyInstanceCache.get("job", settingsFingerprint), sameInstance(reloaded));
+    }
+
+    private Ivy load() throws Exception {
+        IvySettings settings = new IvySettings();
+        settings.load(settingsFile);
+        return Ivy.newInstance(settings);
+    }
+}
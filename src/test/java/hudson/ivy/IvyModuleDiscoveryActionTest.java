@@ -0,0 +1,54 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class IvyModuleDiscoveryActionTest {
+
+    @Test
+    void should_record_the_phases_in_the_order_they_ran() {
+        Map<String, Long> nanos = new LinkedHashMap<>();
+        nanos.put("Scan for descriptors", 3_000_000L);
+        nanos.put("Parse descriptors", 5_500_000L);
+
+        IvyModuleDiscoveryAction action = new IvyModuleDiscoveryAction(nanos, true, 4);
+
+        assertThat(names(action), contains("Scan for descriptors", "Parse descriptors"));
+        assertThat(action.getDuration("Parse descriptors"), equalTo(5L));
+        assertThat(action.getDuration("Sort modules"), equalTo(-1L));
+        assertThat(action.getTotalDuration(), equalTo(8L));
+        assertThat(action.getModuleCount(), equalTo(4));
+        assertThat(action.getBuildNumber(), equalTo(0));
+        assertThat(action.getUrlName(), nullValue());
+    }
+
+    @Test
+    void should_add_up_the_durations_recorded_for_a_phase() {
+        IvyModuleDiscoveryAction.Stopwatch stopwatch = new IvyModuleDiscoveryAction.Stopwatch();
+        stopwatch.lap("Load Ivy settings");
+        stopwatch.addAll(Map.of("Parse descriptors", 7L));
+        stopwatch.add("Remoting", 2);
+        stopwatch.add("Parse descriptors", 3);
+
+        assertThat(
+                new ArrayList<>(stopwatch.getPhases().keySet()),
+                contains("Load Ivy settings", "Parse descriptors", "Remoting"));
+        assertThat(stopwatch.getPhases().get("Parse descriptors"), equalTo(10L));
+    }
+
+    private static List<String> names(IvyModuleDiscoveryAction action) {
+        List<String> r = new ArrayList<>();
+        for (IvyModuleDiscoveryAction.Phase phase : action.getPhases()) {
+            r.add(phase.getName());
+        }
+        return r;
+    }
+}
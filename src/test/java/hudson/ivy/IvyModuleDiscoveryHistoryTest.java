@@ -0,0 +1,48 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItems;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleDiscoveryHistoryTest {
+
+    @Test
+    void should_show_the_module_discovery_of_the_recent_builds(JenkinsRule j) throws Exception {
+        // keep the module builds in the queue, only module discovery is tested here
+        j.jenkins.setQuietPeriod(3600);
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        project.setAggregatorStyleBuild(false);
+        String descriptor = "<ivy-module version='2.0'><info organisation='org.example' module='core'/></ivy-module>";
+        j.jenkins.getWorkspaceFor(project).child("core/ivy.xml").write(descriptor, "UTF-8");
+        IvyModuleSetBuild first = build(j, project);
+        IvyModuleSetBuild second = build(j, project);
+
+        IvyModuleDiscoveryHistory history = project.getAction(IvyModuleDiscoveryHistory.class);
+        List<IvyModuleDiscoveryAction> builds = history.getBuilds();
+        assertThat(
+                builds,
+                contains(
+                        second.getAction(IvyModuleDiscoveryAction.class),
+                        first.getAction(IvyModuleDiscoveryAction.class)));
+        assertThat(history.getPhaseNames(builds), hasItems("Scan for descriptors", "Parse descriptors"));
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        assertThat(
+                wc.getPage(project, history.getUrlName()).asNormalizedText(), containsString("Parse descriptors"));
+        assertThat(wc.getPage(second).asNormalizedText(), containsString("Discovered 1 modules"));
+    }
+
+    private static IvyModuleSetBuild build(JenkinsRule j, IvyModuleSet project) throws Exception {
+        IvyModuleSetBuild build = j.buildAndAssertSuccess(project);
+        // the module set is blocked while its modules are queued
+        j.jenkins.getQueue().clear();
+        return build;
+    }
+}
@@ -0,0 +1,51 @@
+package hudson.ivy;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Modules of the organisation {@code org.example} for the tests, each described by a
+ * descriptor at {@code <name>/ivy.xml}.
+ */
+final class IvyModuleFixtures {
+
+    private IvyModuleFixtures() {}
+
+    /**
+     * Describes revision 1.0 of the given module.
+     */
+    static IvyModuleInfo info(String name, ModuleDependency... dependencies) {
+        return info(name, "1.0", dependencies);
+    }
+
+    static IvyModuleInfo info(String name, String revision, ModuleDependency... dependencies) {
+        return new IvyModuleInfo(
+                new ModuleName("org.example", name),
+                name,
+                name + "/ivy.xml",
+                revision,
+                ModuleDependency.UNKNOWN,
+                Arrays.asList(dependencies));
+    }
+
+    static ModuleDependency dependency(String name, String revision) {
+        return new ModuleDependency("org.example", name, revision, null);
+    }
+
+    /**
+     * Creates revision 1.0 of the given module in the given module set, depending on
+     * the latest integration revision of the given modules, and adds it to
+     * {@code modules}.
+     */
+    static IvyModule module(
+            IvyModuleSet project, Map<ModuleName, IvyModule> modules, String name, String... dependencies)
+            throws Exception {
+        ModuleDependency[] deps = new ModuleDependency[dependencies.length];
+        for (int i = 0; i < deps.length; i++) {
+            deps[i] = dependency(dependencies[i], "latest.integration");
+        }
+        IvyModule module = new IvyModule(project, info(name, deps), 1);
+        modules.put(module.getModuleName(), module);
+        return module;
+    }
+}
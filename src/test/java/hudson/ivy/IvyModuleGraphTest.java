@@ -0,0 +1,108 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.module;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Result;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.tasks.BuildTrigger;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleGraphTest {
+
+    @Test
+    void should_answer_like_the_dependency_graph(JenkinsRule j) throws Exception {
+        FreeStyleProject a = j.createFreeStyleProject("a");
+        FreeStyleProject b = j.createFreeStyleProject("b");
+        FreeStyleProject c = j.createFreeStyleProject("c");
+        FreeStyleProject d = j.createFreeStyleProject("d");
+        a.getPublishersList().add(new BuildTrigger("b, c", Result.SUCCESS));
+        b.getPublishersList().add(new BuildTrigger("c", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+
+        IvyModuleGraph graph = IvyModuleGraph.get();
+        assertThat(IvyModuleGraph.get(), sameInstance(graph));
+
+        assertThat(graph.getTransitiveUpstream(ids(graph, c)), equalTo(ids(graph, a, b)));
+        assertThat(graph.getTransitiveUpstream(ids(graph, d)), equalTo(ids(graph)));
+        assertThat(graph.getTransitiveDownstream(ids(graph, a)), equalTo(ids(graph, b, c)));
+
+        assertThat(graph.getDownstreamOfOthers(ids(graph, b, c)), equalTo(ids(graph, c)));
+        assertThat(graph.getDownstreamOfOthers(ids(graph, a, b, c)), equalTo(ids(graph, b, c)));
+        assertThat(graph.getTransitiveDownstream(ids(graph, b, d)), equalTo(ids(graph, c)));
+
+        c.getPublishersList().add(new BuildTrigger("a", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+        IvyModuleGraph cyclic = IvyModuleGraph.get();
+        assertThat(cyclic, not(sameInstance(graph)));
+        assertThat(cyclic.getTransitiveUpstream(ids(cyclic, c)), equalTo(ids(cyclic, a, b, c)));
+        assertThat(cyclic.getDownstreamOfOthers(ids(cyclic, a)), equalTo(ids(cyclic, b, c)));
+        assertThat(cyclic.getTransitiveDownstream(ids(cyclic, a)), equalTo(ids(cyclic, a, b, c)));
+    }
+
+    @Test
+    void should_include_projects_the_first_caller_cannot_read(JenkinsRule j) throws Exception {
+        FreeStyleProject a = j.createFreeStyleProject("a");
+        FreeStyleProject b = j.createFreeStyleProject("b");
+        a.getPublishersList().add(new BuildTrigger("b", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ)
+                .everywhere()
+                .to("alice")
+                .grant(Item.READ)
+                .onItems(b)
+                .to("alice"));
+
+        IvyModuleGraph graph;
+        try (ACLContext ctx = ACL.as2(User.getById("alice", true).impersonate2())) {
+            graph = IvyModuleGraph.get();
+        }
+        assertThat(graph.getId(a), not(equalTo(-1)));
+        assertThat(graph.getTransitiveUpstream(ids(graph, b)), equalTo(ids(graph, a)));
+    }
+
+    @Test
+    void should_cache_upstream_modules_of_the_same_module_set(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        project.setAggregatorStyleBuild(false);
+        Map<ModuleName, IvyModule> modules = new HashMap<>();
+        IvyModule api = module(project, modules, "api");
+        IvyModule core = module(project, modules, "core", "api");
+        IvyModule web = module(project, modules, "web", "core");
+        project.replaceModules(modules);
+        j.jenkins.rebuildDependencyGraph();
+
+        IvyModuleGraph graph = IvyModuleGraph.get();
+        assertThat(graph.getSameSetUpstream(web), arrayContaining(core, api));
+        assertThat(graph.getSameSetUpstream(web), sameInstance(graph.getSameSetUpstream(web)));
+        assertThat(graph.getSameSetUpstream(api), emptyArray());
+    }
+
+    private static BitSet ids(IvyModuleGraph graph, AbstractProject<?, ?>... projects) {
+        BitSet ids = new BitSet();
+        for (AbstractProject<?, ?> p : projects) {
+            ids.set(graph.getId(p));
+        }
+        return ids;
+    }
+}
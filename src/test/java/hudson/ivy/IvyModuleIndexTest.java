@@ -0,0 +1,59 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.dependency;
+import static hudson.ivy.IvyModuleFixtures.info;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleIndexTest {
+
+    @Test
+    void should_follow_module_changes(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        IvyModule module = new IvyModule(project, info("core", "1.0"), 1);
+
+        assertThat(IvyModuleIndex.find(dependency("core", "1.0")), sameInstance(module));
+        assertThat(IvyModuleIndex.find(dependency("core", "1.0").withUnknownRevision()), sameInstance(module));
+
+        module.reconfigure(info("core", "1.1"));
+        assertThat(IvyModuleIndex.find(dependency("core", "1.0")), nullValue());
+        assertThat(IvyModuleIndex.find(dependency("core", "1.1")), sameInstance(module));
+
+        module.makeDisabled(true);
+        assertThat(IvyModuleIndex.find(dependency("core", "1.1")), nullValue());
+        module.makeDisabled(false);
+
+        project.setAllowedToTriggerDownstream(false);
+        assertThat(IvyModuleIndex.find(dependency("core", "1.1")), nullValue());
+        project.setAllowedToTriggerDownstream(true);
+
+        project.delete();
+        assertThat(IvyModuleIndex.find(dependency("core", "1.1")), nullValue());
+    }
+
+    @Test
+    void should_pick_the_module_listed_last_by_get_all_items(JenkinsRule j) throws Exception {
+        IvyModule b = module(j.createProject(IvyModuleSet.class, "B"));
+        module(j.createProject(IvyModuleSet.class, "a"));
+        module(j.createProject(IvyModuleSet.class, "a-b"));
+
+        // by name within each item group, ignoring case, with item groups followed by a slash
+        List<IvyModule> all = j.jenkins.getAllItems(IvyModule.class);
+        assertThat(all.get(all.size() - 1), sameInstance(b));
+        assertThat(IvyModuleIndex.find(dependency("core", "1.0")), sameInstance(b));
+    }
+
+    private static IvyModule module(IvyModuleSet project) throws Exception {
+        IvyModule module = new IvyModule(project, info("core", "1.0"), 1);
+        project.replaceModules(Map.of(module.getModuleName(), module));
+        return module;
+    }
+}
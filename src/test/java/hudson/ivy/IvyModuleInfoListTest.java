@@ -0,0 +1,91 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.dependency;
+import static hudson.ivy.IvyModuleFixtures.info;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IvyModuleInfoListTest {
+
+    @Test
+    void should_restore_the_same_modules() throws Exception {
+        List<IvyModuleInfo> modules = Arrays.asList(
+                info("core"),
+                new IvyModuleInfo(
+                        new ModuleName(null, "client"),
+                        "client",
+                        "client/ivy.xml",
+                        ModuleDependency.UNKNOWN,
+                        "trunk",
+                        Arrays.asList(
+                                new ModuleDependency("org.example", "core", "1.0", "trunk"),
+                                new ModuleDependency("org.other", "lib", "latest.release", null))));
+
+        List<IvyModuleInfo> restored = roundTrip(modules);
+
+        assertThat(restored.size(), equalTo(2));
+        for (int i = 0; i < modules.size(); i++) {
+            IvyModuleInfo expected = modules.get(i);
+            IvyModuleInfo actual = restored.get(i);
+            assertThat(actual.name, equalTo(expected.name));
+            assertThat(actual.displayName, equalTo(expected.displayName));
+            assertThat(actual.relativePathToDescriptor, equalTo(expected.relativePathToDescriptor));
+            assertThat(actual.revision, equalTo(expected.revision));
+            assertThat(actual.branch, equalTo(expected.branch));
+            assertThat(new ArrayList<>(actual.dependencies), equalTo(new ArrayList<>(expected.dependencies)));
+        }
+        assertThat(restored.get(1).name.organisation, nullValue());
+        assertThat(
+                restored.get(1).dependencies.iterator().next().organisation,
+                sameInstance(restored.get(0).name.organisation));
+    }
+
+    @Test
+    void should_be_smaller_than_plain_serialization() throws Exception {
+        List<IvyModuleInfo> modules = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            List<ModuleDependency> dependencies = new ArrayList<>();
+            for (int j = 0; j < Math.min(i, 20); j++) {
+                dependencies.add(dependency("module-" + (i - j - 1), "1.0"));
+            }
+            modules.add(info("module-" + i, dependencies.toArray(new ModuleDependency[0])));
+        }
+
+        int compact = serialize(new IvyModuleInfoList(modules)).length;
+        int plain = serialize(new ArrayList<>(modules)).length;
+        assertThat(compact, lessThan(plain / 10));
+
+        List<IvyModuleInfo> restored = roundTrip(modules);
+        assertThat(restored.size(), equalTo(modules.size()));
+        assertThat(restored.get(1999).dependencies.iterator().next(), equalTo(dependency("module-1998", "1.0")));
+        assertThat(new ArrayList<>(restored.get(1).dependencies), contains(dependency("module-0", "1.0")));
+    }
+
+    private static List<IvyModuleInfo> roundTrip(List<IvyModuleInfo> modules) throws Exception {
+        byte[] data = serialize(new IvyModuleInfoList(modules));
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return ((IvyModuleInfoList) in.readObject()).getModules();
+        }
+    }
+
+    private static byte[] serialize(Object o) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(o);
+        }
+        return buf.toByteArray();
+    }
+}
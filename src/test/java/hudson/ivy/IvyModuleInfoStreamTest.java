@@ -0,0 +1,141 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.info;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class IvyModuleInfoStreamTest {
+
+    @Test
+    void should_send_the_modules_and_their_order() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count = IvyModuleInfoStream.BATCH_SIZE * 2 + 1;
+        try (IvyModuleInfoStream.Writer writer = new IvyModuleInfoStream.Writer(out)) {
+            for (int i = 0; i < count; i++) {
+                assertThat(writer.add(info("m" + i)), equalTo(i));
+            }
+            writer.finish(new int[] {2, 0, 1});
+        }
+
+        List<String> received = new ArrayList<>();
+        int[] order = read(out.toByteArray(), received);
+
+        assertThat(received.size(), equalTo(count));
+        assertThat(received.get(0), equalTo("m0"));
+        assertThat(received.get(count - 1), equalTo("m" + (count - 1)));
+        assertThat(order, equalTo(new int[] {2, 0, 1}));
+    }
+
+    @Test
+    void should_tell_when_discovery_failed_before_sending_the_order() throws Exception {
+        // the build node closes the stream when discovery throws
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IvyModuleInfoStream.Writer writer = new IvyModuleInfoStream.Writer(out)) {
+            writer.add(info("core"));
+            writer.flush();
+            writer.add(info("client"));
+        }
+
+        List<String> received = new ArrayList<>();
+        assertThat(read(out.toByteArray(), received), nullValue());
+        assertThat(received, equalTo(Arrays.asList("core", "client")));
+    }
+
+    @Test
+    void should_tell_when_the_stream_was_cut_short() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IvyModuleInfoStream.Writer writer = new IvyModuleInfoStream.Writer(out)) {
+            writer.add(info("core"));
+            writer.flush();
+            writer.add(info("client"));
+            writer.finish(new int[] {0, 1});
+        }
+        byte[] data = out.toByteArray();
+
+        for (int length = 0; length < data.length; length++) {
+            List<String> received = new ArrayList<>();
+            assertThat(read(Arrays.copyOf(data, length), received), nullValue());
+            assertThat(received.size() <= 2, equalTo(true));
+        }
+    }
+
+    @Test
+    void should_reject_corrupted_streams() {
+        byte[] data = {42, 0, 0, 0, 1, 0};
+        assertThrows(IOException.class, () -> read(data, new ArrayList<>()));
+    }
+
+    @Test
+    void should_read_the_modules_written_by_a_call_that_completed() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IvyModuleInfoStream.Writer writer = new IvyModuleInfoStream.Writer(out)) {
+            writer.add(info("core"));
+            writer.finish(new int[] {0});
+        }
+        FastPipedInputStream in = new FastPipedInputStream();
+        FastPipedOutputStream pipe = new FastPipedOutputStream(in);
+        pipe.write(out.toByteArray());
+        pipe.close();
+
+        List<String> received = new ArrayList<>();
+        int[] order = IvyModuleInfoStream.read(
+                in, pipe, CompletableFuture.completedFuture(null), module -> received.add(module.name.name));
+
+        assertThat(order, equalTo(new int[] {0}));
+        assertThat(received, equalTo(Arrays.asList("core")));
+    }
+
+    @Test
+    void should_abort_when_the_call_fails_partway_through_a_batch() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IvyModuleInfoStream.Writer writer = new IvyModuleInfoStream.Writer(out);
+        writer.add(info("core"));
+        writer.flush();
+        int firstBatch = out.size();
+        writer.add(info("client"));
+        writer.flush();
+        byte[] data = out.toByteArray();
+
+        // the channel is lost before the build node closes the stream
+        FastPipedInputStream in = new FastPipedInputStream();
+        FastPipedOutputStream pipe = new FastPipedOutputStream(in);
+        pipe.write(data, 0, firstBatch + (data.length - firstBatch) / 2);
+        CompletableFuture<Void> call = new CompletableFuture<>();
+        IOException lost = new IOException("channel closed");
+        call.completeExceptionally(lost);
+
+        List<String> received = new ArrayList<>();
+        IOException e = assertThrows(
+                IOException.class,
+                () -> IvyModuleInfoStream.read(in, pipe, call, module -> received.add(module.name.name)));
+
+        assertThat(rootCause(e), sameInstance(lost));
+        assertThat(received, equalTo(Arrays.asList("core")));
+    }
+
+    private static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static int[] read(byte[] data, List<String> received) throws IOException {
+        return IvyModuleInfoStream.read(
+                new ByteArrayInputStream(data), module -> received.add(module.name.name));
+    }
+}
@@ -0,0 +1,318 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.CauseAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.StringParameterDefinition;
+import hudson.model.TaskListener;
+import hudson.model.User;
+import hudson.scm.ChangeLogParser;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.NullSCM;
+import hudson.scm.RepositoryBrowser;
+import hudson.scm.SCMDescriptor;
+import hudson.scm.SCMRevisionState;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleSetBuildTest {
+
+    /**
+     * Number of descriptors added by {@link #addLibraries()}, enough for each thread to
+     * parse several.
+     */
+    private static final int LIBRARIES = 40;
+
+    private JenkinsRule j;
+
+    private IvyModuleSet project;
+
+    private FilePath workspace;
+
+    @BeforeEach
+    void createProject(JenkinsRule j) throws Exception {
+        this.j = j;
+        // keep the module builds in the queue, only module discovery is tested here
+        j.jenkins.setQuietPeriod(3600);
+        project = j.createProject(IvyModuleSet.class);
+        project.setAggregatorStyleBuild(false);
+        workspace = j.jenkins.getWorkspaceFor(project);
+        descriptor("api");
+        descriptor("core", "api");
+        descriptor("web", "core");
+    }
+
+    @Test
+    void should_configure_the_modules_streamed_from_the_build_node() throws Exception {
+        project.setStreamModuleDiscovery(true);
+        project.setDescriptorParsingParallelism(4);
+
+        build();
+
+        assertConfigured();
+    }
+
+    @Test
+    void should_queue_every_module_with_the_parameters_of_the_build() throws Exception {
+        project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("branch", "trunk")));
+
+        IvyModuleSetBuild build = j.buildAndAssertSuccess(project);
+
+        assertThat(project.getModules().size(), equalTo(3));
+        for (IvyModule module : project.getModules()) {
+            Queue.Item item = module.getQueueItem();
+            assertThat(item, notNullValue());
+            AbstractIvyBuild.ParameterizedUpstreamCause cause =
+                    item.getAction(CauseAction.class).findCause(AbstractIvyBuild.ParameterizedUpstreamCause.class);
+            assertThat(cause.getUpstreamBuild(), equalTo(build.getNumber()));
+            assertThat(cause.getUpStreamParameters(), hasSize(1));
+        }
+        j.jenkins.getQueue().clear();
+    }
+
+    @Test
+    void should_rebuild_the_dependency_graph_before_triggering_the_modules() throws Exception {
+        j.assertLogContains(
+                "The modules or their dependencies changed, rebuilding the dependency graph\n", build());
+        assertConfigured();
+
+        j.assertLogContains("No module or dependency changed, keeping the dependency graph", build());
+        assertConfigured();
+    }
+
+    @Test
+    void should_discover_the_same_modules_with_several_threads() throws Exception {
+        addLibraries();
+        build();
+        List<String> sequential = discovered();
+        assertThat(sequential.size(), equalTo(3 + LIBRARIES));
+
+        project.setDescriptorParsingParallelism(8);
+        build();
+
+        assertThat(discovered(), equalTo(sequential));
+    }
+
+    @Test
+    void should_report_a_broken_descriptor_and_parse_the_others_with_several_threads() throws Exception {
+        addLibraries();
+        project.setDescriptorParsingParallelism(8);
+
+        IvyModuleSetBuild build = build();
+
+        j.assertLogContains(
+                "Parsing error while reading the ivy file "
+                        + new File(workspace.getRemote(), "broken" + File.separator + "ivy.xml"),
+                build);
+        assertThat(project.getModule("org.example:broken"), nullValue());
+        assertThat(project.getModules().size(), equalTo(3 + LIBRARIES));
+        assertThat(project.getModule("org.example:lib" + (LIBRARIES - 1)), notNullValue());
+    }
+
+    @Test
+    void should_fail_when_discovery_fails_while_streaming() throws Exception {
+        project.setStreamModuleDiscovery(true);
+        project.setIvySettingsFile("ivysettings.xml");
+        workspace.child("ivysettings.xml").write("<ivysettings>", "UTF-8");
+
+        IvyModuleSetBuild build = j.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0));
+
+        j.assertLogContains("Unable to parse ivy descriptors", build);
+    }
+
+    @Test
+    void should_keep_the_modules_while_no_ivy_file_changes() throws Exception {
+        ChangedPathsSCM scm = new ChangedPathsSCM();
+        project.setScm(scm);
+        project.setSkipUnchangedDescriptors(true);
+        project.setIvySettingsPropertyFiles("conf/ivy.properties");
+        workspace.child("conf/ivy.properties").write("ivy.default.branch=trunk\n", "UTF-8");
+
+        j.assertLogContains("The modules of the previous build are not known", build());
+        scm.paths.add("core/src/Core.java");
+        j.assertLogContains("No Ivy descriptor or settings changed since build #1, keeping its 3 modules", build());
+        assertConfigured();
+
+        scm.paths.add("core/ivy.xml");
+        j.assertLogContains("Changes to core/ivy.xml may affect the modules", build());
+        j.assertLogContains("No Ivy descriptor or settings changed since build #3", build());
+
+        scm.paths.add("conf/ivy.properties");
+        j.assertLogContains("Changes to conf/ivy.properties may affect the modules", build());
+        j.assertLogContains("No Ivy descriptor or settings changed since build #5", build());
+        assertConfigured();
+    }
+
+    @Test
+    void should_parse_the_descriptors_again_after_a_reload_or_a_configuration_change() throws Exception {
+        project.setSkipUnchangedDescriptors(true);
+        build();
+        j.assertLogContains("No Ivy descriptor or settings changed since build #1", build());
+
+        project.onLoad(project.getParent(), project.getName());
+        j.assertLogContains("The modules of the previous build are not known", build());
+        j.assertLogContains("No Ivy descriptor or settings changed since build #3", build());
+
+        j.configRoundtrip(project);
+        assertThat(project.isSkipUnchangedDescriptors(), equalTo(true));
+        j.assertLogContains("The modules of the previous build are not known", build());
+        assertConfigured();
+    }
+
+    /**
+     * Adds a chain of libraries depending on the web module, and a broken descriptor.
+     */
+    private void addLibraries() throws Exception {
+        for (int i = 0; i < LIBRARIES; i++) {
+            descriptor("lib" + i, i == 0 ? "web" : "lib" + (i - 1));
+        }
+        workspace.child("broken/ivy.xml").write("<ivy-module version='2.0'><info module='broken'", "UTF-8");
+    }
+
+    /**
+     * Returns the active modules in the order they were sorted, with their descriptor.
+     */
+    private List<String> discovered() {
+        List<String> r = new ArrayList<>();
+        for (IvyModule module : project.getDisabledModules(false)) {
+            r.add(module.getModuleName() + " " + module.getRelativePath());
+        }
+        return r;
+    }
+
+    private IvyModuleSetBuild build() throws Exception {
+        IvyModuleSetBuild build = j.buildAndAssertSuccess(project);
+        // the module set is blocked while its modules are queued
+        j.jenkins.getQueue().clear();
+        return build;
+    }
+
+    private void assertConfigured() {
+        IvyModule api = project.getModule("org.example:api");
+        IvyModule core = project.getModule("org.example:core");
+        IvyModule web = project.getModule("org.example:web");
+        assertThat(project.getModules().size(), equalTo(3));
+        assertThat(project.getDisabledModules(false), contains(api, core, web));
+        assertThat(web.getUpstreamProjects(), contains(core));
+        assertThat(core.getRelativePath(), equalTo("core/ivy.xml"));
+    }
+
+    private void descriptor(String name, String... dependencies) throws Exception {
+        StringBuilder xml = new StringBuilder("<ivy-module version='2.0'>")
+                .append("<info organisation='org.example' module='")
+                .append(name)
+                .append("' revision='1.0'/><dependencies>");
+        for (String dependency : dependencies) {
+            xml.append("<dependency name='").append(dependency).append("' rev='1.0'/>");
+        }
+        xml.append("</dependencies></ivy-module>");
+        workspace.child(name + "/ivy.xml").write(xml.toString(), "UTF-8");
+    }
+
+    /**
+     * Leaves the workspace as it is and reports the given paths as changed by the next
+     * build.
+     */
+    public static final class ChangedPathsSCM extends NullSCM {
+        final List<String> paths = new ArrayList<>();
+
+        @Override
+        public void checkout(
+                Run<?, ?> build,
+                Launcher launcher,
+                FilePath workspace,
+                TaskListener listener,
+                File changelogFile,
+                SCMRevisionState baseline)
+                throws IOException {
+            Files.write(changelogFile.toPath(), paths, StandardCharsets.UTF_8);
+            paths.clear();
+        }
+
+        @Override
+        public ChangeLogParser createChangeLogParser() {
+            return new ChangeLogParser() {
+                @Override
+                public ChangeLogSet<? extends ChangeLogSet.Entry> parse(
+                        Run build, RepositoryBrowser<?> browser, File changelogFile) throws IOException {
+                    return new ChangedPaths(build, Files.readAllLines(changelogFile.toPath()));
+                }
+            };
+        }
+
+        @TestExtension
+        public static final class DescriptorImpl extends SCMDescriptor<ChangedPathsSCM> {
+            public DescriptorImpl() {
+                super(null);
+            }
+        }
+    }
+
+    private static final class ChangedPaths extends ChangeLogSet<ChangedPaths.Change> {
+        private final List<Change> changes = new ArrayList<>();
+
+        ChangedPaths(Run<?, ?> build, List<String> paths) {
+            super(build, null);
+            if (!paths.isEmpty()) {
+                changes.add(new Change(this, paths));
+            }
+        }
+
+        @Override
+        public boolean isEmptySet() {
+            return changes.isEmpty();
+        }
+
+        @Override
+        public Iterator<Change> iterator() {
+            return changes.iterator();
+        }
+
+        static final class Change extends ChangeLogSet.Entry {
+            private final List<String> paths;
+
+            Change(ChangedPaths parent, List<String> paths) {
+                this.paths = paths;
+                setParent(parent);
+            }
+
+            @Override
+            public String getMsg() {
+                return "Change " + String.join(", ", paths);
+            }
+
+            @Override
+            public User getAuthor() {
+                return User.getUnknown();
+            }
+
+            @Override
+            public Collection<String> getAffectedPaths() {
+                return paths;
+            }
+        }
+    }
+}
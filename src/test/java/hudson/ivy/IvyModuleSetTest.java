@@ -1,8 +1,12 @@
 package hudson.ivy;
 
+import static hudson.ivy.IvyModuleFixtures.info;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 import io.jenkins.plugins.casc.ConfigurationAsCode;
 import io.jenkins.plugins.casc.misc.ConfiguredWithCode;
@@ -11,6 +15,8 @@ import io.jenkins.plugins.casc.misc.junit.jupiter.WithJenkinsConfiguredWithCode;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 
@@ -40,4 +46,22 @@ class IvyModuleSetTest {
 
         assertThat(exportedYaml, containsString(expectedYaml));
     }
+
+    @Test
+    void should_replace_all_the_modules_at_once(JenkinsConfiguredWithCodeRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        IvyModule api = new IvyModule(project, info("api"), 1);
+        IvyModule core = new IvyModule(project, info("core"), 1);
+        project.replaceModules(Map.of(api.getModuleName(), api, core.getModuleName(), core));
+        Collection<IvyModule> before = project.getModules();
+
+        IvyModule web = new IvyModule(project, info("web"), 1);
+        project.replaceModules(Map.of(core.getModuleName(), core, web.getModuleName(), web));
+
+        // readers keep the modules they started with
+        assertThat(before, contains(api, core));
+        assertThat(project.getModules(), contains(core, web));
+        assertThat(project.getModule("org.example:api"), nullValue());
+        assertThat(project.getModule("org.example:web"), sameInstance(web));
+    }
 }
@@ -0,0 +1,84 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.dependency;
+import static hudson.ivy.IvyModuleFixtures.info;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IvyModuleSorterTest {
+
+    @Test
+    void should_put_dependencies_first() {
+        List<IvyModuleInfo> modules = Arrays.asList(
+                info("app", "1.0", dependency("web", "latest.integration"), dependency("core", "1.0")),
+                info("web", "1.0", dependency("core", "[1.0,2.0[")),
+                info("tools", "1.0"),
+                info("core", "1.0"));
+
+        IvyModuleSorter sorter = new IvyModuleSorter(modules);
+
+        assertThat(names(sorter.getSortedModules()), contains("tools", "core", "web", "app"));
+        assertThat(sorter.getCycles(), empty());
+        assertThat(sorter.getDepth(0), equalTo(2));
+        assertThat(sorter.getDepth(1), equalTo(1));
+        assertThat(sorter.getDepth(2), equalTo(0));
+        assertThat(sorter.getDepth(3), equalTo(0));
+    }
+
+    @Test
+    void should_ignore_dependencies_on_other_static_revisions() {
+        List<IvyModuleInfo> modules = Arrays.asList(
+                info("app", "1.0", dependency("core", "0.9"), dependency("external", "1.0")), info("core", "1.0"));
+
+        IvyModuleSorter sorter = new IvyModuleSorter(modules);
+
+        assertThat(names(sorter.getSortedModules()), contains("app", "core"));
+        assertThat(sorter.getDepth(0), equalTo(0));
+    }
+
+    @Test
+    void should_report_cycles() {
+        List<IvyModuleInfo> modules = Arrays.asList(
+                info("app", "1.0", dependency("b", "1.0")),
+                info("a", "1.0", dependency("b", "1.0"), dependency("core", "1.0")),
+                info("b", "1.0", dependency("a", "1.0")),
+                info("core", "1.0"));
+
+        IvyModuleSorter sorter = new IvyModuleSorter(modules);
+
+        assertThat(names(sorter.getSortedModules()), contains("core", "a", "b", "app"));
+        assertThat(sorter.getCycles().size(), equalTo(1));
+        assertThat(names(sorter.getCycles().get(0)), contains("a", "b"));
+        assertThat(sorter.getDepth(1), equalTo(1));
+        assertThat(sorter.getDepth(2), equalTo(1));
+        assertThat(sorter.getDepth(0), equalTo(2));
+    }
+
+    @Test
+    void should_sort_long_chains() {
+        List<IvyModuleInfo> modules = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            modules.add(i == 0 ? info("m0", "1.0") : info("m" + i, "1.0", dependency("m" + (i - 1), "1.0")));
+        }
+
+        IvyModuleSorter sorter = new IvyModuleSorter(modules);
+
+        assertThat(sorter.getSortedModules(), equalTo(modules));
+        assertThat(sorter.getDepth(99_999), equalTo(99_999));
+    }
+
+    private static List<String> names(List<IvyModuleInfo> modules) {
+        List<String> r = new ArrayList<>();
+        for (IvyModuleInfo module : modules) {
+            r.add(module.displayName);
+        }
+        return r;
+    }
+}
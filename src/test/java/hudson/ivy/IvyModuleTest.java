@@ -0,0 +1,153 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.dependency;
+import static hudson.ivy.IvyModuleFixtures.info;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import hudson.model.DependencyGraph;
+import hudson.model.queue.CauseOfBlockage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleTest {
+
+    @Test
+    void should_only_save_changed_modules(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        IvyModule module = new IvyModule(project, core("1.0"), 1);
+
+        assertThat(module.saveIfChanged(), equalTo(true));
+        assertThat(module.saveIfChanged(), equalTo(false));
+
+        assertThat(module.reconfigure(core("1.0")), equalTo(false));
+        assertThat(module.saveIfChanged(), equalTo(false));
+
+        assertThat(module.reconfigure(core("1.1")), equalTo(true));
+        assertThat(module.saveIfChanged(), equalTo(true));
+        assertThat(module.saveIfChanged(), equalTo(false));
+
+        module.makeDisabled(true);
+        assertThat(module.saveIfChanged(), equalTo(false));
+        assertThat(module.reconfigure(core("1.1")), equalTo(true));
+        assertThat(module.saveIfChanged(), equalTo(true));
+    }
+
+    @Test
+    void should_tell_which_changes_affect_the_dependency_graph(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        IvyModule module = new IvyModule(project, core("1.0"), 1);
+
+        IvyModuleInfo moved = new IvyModuleInfo(
+                module.getModuleName(),
+                "Core",
+                "modules/core/ivy.xml",
+                "1.0",
+                ModuleDependency.UNKNOWN,
+                Arrays.asList(dependency("api", "latest.integration")));
+        assertThat(module.affectsDependencyGraph(moved), equalTo(false));
+        assertThat(module.affectsDependencyGraph(core("1.1")), equalTo(true));
+        assertThat(module.reconfigure(moved), equalTo(true));
+    }
+
+    @Test
+    void should_block_module_set_while_a_module_is_queued(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        project.setAggregatorStyleBuild(false);
+        IvyModule module = new IvyModule(project, core("1.0"), 1);
+        project.replaceModules(Map.of(module.getModuleName(), module));
+        assertThat(project.getCauseOfBlockage(), nullValue());
+
+        j.jenkins.getQueue().schedule2(module, 3600);
+        CauseOfBlockage cause = project.getCauseOfBlockage();
+        assertThat(cause, instanceOf(IvyModuleSet.BecauseOfModuleBuildInProgress.class));
+        assertThat(((IvyModuleSet.BecauseOfModuleBuildInProgress) cause).module, sameInstance(module));
+
+        j.jenkins.getQueue().cancel(module);
+        assertThat(project.getCauseOfBlockage(), nullValue());
+    }
+
+    @Test
+    void should_depend_on_the_modules_of_the_same_set_first(JenkinsRule j) throws Exception {
+        // listed after the module set below, so it would be found first outside of it
+        IvyModuleSet other = j.createProject(IvyModuleSet.class, "shared");
+        other.setAggregatorStyleBuild(false);
+        IvyModule otherM1 = new IvyModule(other, info("m1"), 1);
+        other.replaceModules(Map.of(otherM1.getModuleName(), otherM1));
+
+        // every module depends on m0 and on the three modules before it
+        IvyModuleSet project = j.createProject(IvyModuleSet.class, "project");
+        project.setAggregatorStyleBuild(false);
+        Map<ModuleName, IvyModule> modules = new HashMap<>();
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            IvyModule module = new IvyModule(project, chained(i), 1);
+            modules.put(module.getModuleName(), module);
+        }
+        project.replaceModules(modules);
+        j.jenkins.rebuildDependencyGraph();
+
+        DependencyGraph graph = j.jenkins.getDependencyGraph();
+        IvyModule m0 = project.getModule("org.example:m0");
+        assertThat(graph.getDownstream(m0), hasSize(count - 1));
+        assertThat(
+                graph.getUpstream(project.getModule("org.example:m4")),
+                containsInAnyOrder(
+                        m0,
+                        project.getModule("org.example:m1"),
+                        project.getModule("org.example:m2"),
+                        project.getModule("org.example:m3")));
+        assertThat(graph.getDownstream(otherM1), hasSize(0));
+    }
+
+    @Test
+    void should_add_each_dependency_between_two_projects_once(JenkinsRule j) throws Exception {
+        IvyModuleSet lib = j.createProject(IvyModuleSet.class, "lib");
+        lib.setAggregatorStyleBuild(false);
+        IvyModule api = new IvyModule(lib, info("api"), 1);
+        lib.replaceModules(Map.of(api.getModuleName(), api));
+
+        // both modules depend on api, core twice
+        IvyModuleSet app = j.createProject(IvyModuleSet.class, "app");
+        app.setAggregatorStyleBuild(false);
+        IvyModule core = new IvyModule(
+                app, info("core", dependency("api", "1.0"), dependency("api", "latest.integration")), 1);
+        IvyModule web = new IvyModule(app, info("web", dependency("api", "1.0")), 1);
+        app.replaceModules(Map.of(core.getModuleName(), core, web.getModuleName(), web));
+        j.jenkins.rebuildDependencyGraph();
+
+        DependencyGraph graph = j.jenkins.getDependencyGraph();
+        assertThat(graph.getDownstreamDependencies(api), hasSize(1));
+        assertThat(graph.getDownstream(api), contains(app));
+        assertThat(graph.getDownstreamDependencies(lib), hasSize(3));
+        assertThat(graph.getDownstream(lib), containsInAnyOrder(app, core, web));
+    }
+
+    private static IvyModuleInfo chained(int index) {
+        List<ModuleDependency> dependencies = new ArrayList<>();
+        if (index > 0) {
+            dependencies.add(dependency("m0", "latest.integration"));
+        }
+        for (int k = Math.max(1, index - 3); k < index; k++) {
+            dependencies.add(dependency("m" + k, "1.0"));
+        }
+        return info("m" + index, dependencies.toArray(new ModuleDependency[0]));
+    }
+
+    private static IvyModuleInfo core(String revision) {
+        return info("core", revision, dependency("api", "latest.integration"));
+    }
+}
@@ -0,0 +1,59 @@
+package hudson.ivy;
+
+import static hudson.ivy.IvyModuleFixtures.module;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import hudson.model.Run;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class IvyModuleWavesTest {
+
+    @Test
+    void should_release_modules_once_their_upstream_modules_completed(JenkinsRule j) throws Exception {
+        IvyModuleSet project = j.createProject(IvyModuleSet.class);
+        project.setAggregatorStyleBuild(false);
+        project.setMaxConcurrentModuleBuilds(1);
+        Map<ModuleName, IvyModule> modules = new HashMap<>();
+        IvyModule api = module(project, modules, "api");
+        IvyModule core = module(project, modules, "core", "api");
+        IvyModule web = module(project, modules, "web", "core");
+        IvyModule tool = module(project, modules, "tool");
+        project.replaceModules(modules);
+        j.jenkins.rebuildDependencyGraph();
+
+        // without build history, each module counts the same, so the longest chain goes first
+        IvyModuleWaves run = new IvyModuleWaves(project, Arrays.asList(tool, api, core, web), Arrays.asList(tool, api));
+        assertThat(run.getWaves(), contains(Arrays.asList(tool, api), Arrays.asList(core), Arrays.asList(web)));
+        assertThat(run.getCriticalPath(), contains(api, core, web));
+
+        assertThat(released(run.start(null)), contains(api));
+        assertThat(run.isWaiting(core), equalTo(true));
+        run.queued(api, 42);
+        // a build the run did not schedule
+        assertThat(released(run.completed(api, 41, null, true)), equalTo(Collections.emptyList()));
+        assertThat(run.isWaiting(core), equalTo(true));
+        assertThat(released(run.completed(api, 42, null, true)), contains(core));
+        assertThat(run.isWaiting(core), equalTo(false));
+        assertThat(run.isWaiting(tool), equalTo(true));
+
+        // a failed module drops the modules downstream of it
+        assertThat(released(run.completed(core, Run.QUEUE_ID_UNKNOWN, null, false)), contains(tool));
+        assertThat(run.isWaiting(web), equalTo(false));
+        assertThat(released(run.completed(tool, Run.QUEUE_ID_UNKNOWN, null, true)), equalTo(Collections.emptyList()));
+        assertThat(run.isDone(), equalTo(true));
+    }
+
+    private static List<IvyModule> released(Map<AbstractIvyBuild<?, ?>, List<IvyModule>> modules) {
+        return modules.isEmpty() ? Collections.emptyList() : modules.get(null);
+    }
+}
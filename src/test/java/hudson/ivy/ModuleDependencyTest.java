@@ -0,0 +1,39 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.jupiter.api.Test;
+
+class ModuleDependencyTest {
+
+    @Test
+    void should_share_equal_instances() {
+        ModuleDependency dependency = new ModuleDependency("org.example", "core", "1.0", null).intern();
+
+        assertThat(new ModuleDependency("org.example", "core", "1.0", null).intern(), sameInstance(dependency));
+        assertThat(
+                dependency.withUnknownRevision(),
+                sameInstance(new ModuleDependency("org.example", "core", "latest.integration", null).intern()));
+        assertThat(dependency.getName(), sameInstance(new ModuleName("org.example", "core").intern()));
+        assertThat(dependency.hashCode(), equalTo(new ModuleDependency("org.example", "core", "1.0", null).hashCode()));
+    }
+
+    @Test
+    void should_share_deserialized_instances() throws Exception {
+        ModuleDependency dependency = new ModuleDependency("org.example", "core", "1.0", null).intern();
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(dependency);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            assertThat(in.readObject(), sameInstance(dependency));
+        }
+    }
+}
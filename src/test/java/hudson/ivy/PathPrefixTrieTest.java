@@ -0,0 +1,42 @@
+package hudson.ivy;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PathPrefixTrieTest {
+
+    @Test
+    void should_find_all_prefixes_like_starts_with() {
+        PathPrefixTrie<String> trie = new PathPrefixTrie<>();
+        trie.put("", "root");
+        trie.put("core", "core");
+        trie.put("core/impl/", "impl");
+        trie.put("web/", "web");
+
+        assertThat(prefixesOf(trie, "core/impl/src/Main.java"), contains("root", "core", "impl"));
+        assertThat(prefixesOf(trie, "core-api/ivy.xml"), contains("root", "core"));
+        assertThat(prefixesOf(trie, "web"), contains("root"));
+        assertThat(prefixesOf(trie, "tools/build.xml"), contains("root"));
+    }
+
+    @Test
+    void should_keep_every_value_of_a_key() {
+        PathPrefixTrie<String> trie = new PathPrefixTrie<>();
+        trie.put("lib/", "a");
+        trie.put("lib/", "b");
+
+        assertThat(prefixesOf(trie, "lib/ivy.xml"), contains("a", "b"));
+        assertThat(prefixesOf(trie, "li"), empty());
+    }
+
+    private static List<String> prefixesOf(PathPrefixTrie<String> trie, String path) {
+        List<String> r = new ArrayList<>();
+        trie.collectPrefixesOf(path, r);
+        return r;
+    }
+}